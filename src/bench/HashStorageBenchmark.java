@@ -0,0 +1,76 @@
+package bench;
+
+import core.HashStorage;
+import core.OpenHashStorage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Compares hash storages filled with identifier-like string keys, then queried for every key.
+ * Arguments are key counts, 1k, 100k and 1M by default.
+ * Chained storage with fixed buckets is skipped above CHAINED_LIMIT keys, its chains grow linearly
+ */
+public class HashStorageBenchmark {
+    private static final int CHAINED_LIMIT = 100_000;
+    private static final int BUCKETS = 100;
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[]{1_000, 100_000, 1_000_000} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+
+        //Warm up
+        String[] warmUpKeys = keys(10_000);
+        for (int i = 0; i < 5; i++) {
+            run(warmUpKeys, () -> new HashStorage<>(BUCKETS, String::hashCode));
+            run(warmUpKeys, () -> new OpenHashStorage<>(String::hashCode));
+            run(warmUpKeys, HashMap::new);
+        }
+
+        for (int size : sizes) {
+            String[] keys = keys(size);
+            System.out.println("Keys: " + size);
+            if (size <= CHAINED_LIMIT) {
+                HashStorage<String, Integer> chained = new HashStorage<>(BUCKETS, String::hashCode);
+                report("chained storage", keys, () -> chained);
+                System.out.println("    " + chained.getStatistics());
+            }
+            else {
+                System.out.println("  chained storage        skipped");
+            }
+            report("open storage", keys, () -> new OpenHashStorage<>(String::hashCode));
+            report("java.util.HashMap", keys, HashMap::new);
+        }
+    }
+
+    private static String[] keys(int count) {
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = "id" + i;
+        }
+        return keys;
+    }
+
+    /**Puts all keys and then gets every key, returns the sum of found values*/
+    private static long run(String[] keys, Supplier<Map<String, Integer>> storage) {
+        Map<String, Integer> map = storage.get();
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], i);
+        }
+        long sum = 0;
+        for (String key : keys) {
+            sum += map.get(key);
+        }
+        return sum;
+    }
+
+    private static void report(String name, String[] keys, Supplier<Map<String, Integer>> storage) {
+        long start = System.nanoTime();
+        long sum = run(keys, storage);
+        long time = System.nanoTime() - start;
+        System.out.printf("  %-22s %8d ms %10.1f Mops/s %16d checksum%n", name, time / 1000000, 2 * keys.length / 1e6 / (time / 1e9), sum);
+    }
+}
@@ -0,0 +1,110 @@
+package bench;
+
+import core.SymbolsSystem;
+import lexis.MappedSourceReader;
+import lexis.PascalSymbolPack;
+import lexis.TokenStream;
+import lexis.UnmatchedSubstringException;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compares line reader input with memory mapped input on generated sources.
+ * Arguments are source sizes in megabytes, 1, 10 and 100 by default
+ */
+public class MappedInputBenchmark {
+    private static final String PROGRAM_HEADER = "program bench;\nvar u, v, max, min: real;\nbegin\n";
+    private static final String PROGRAM_BODY =
+            "    read(u,v);\n" +
+            "    max:=10;\n" +
+            "    min:=0;\n" +
+            "    if u>v then\n" +
+            "    begin\n" +
+            "        if u>max then max:=u;\n" +
+            "        if v<min then min:=v\n" +
+            "    end\n" +
+            "    else\n" +
+            "    begin\n" +
+            "        if v>max then max:=v;\n" +
+            "        if u<min then min:=u\n" +
+            "    end;\n";
+    private static final String PROGRAM_FOOTER = "    write(max,min)\nend.\n";
+
+    public static void main(String[] args) throws IOException, UnmatchedSubstringException {
+        int[] sizes = args.length == 0 ? new int[]{1, 10, 100} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+
+        //Warm up
+        Path warmUp = generate(1);
+        readerPath(warmUp, SymbolsSystem.LexerEngine.DFA);
+        mappedPath(warmUp);
+        Files.delete(warmUp);
+
+        for (int size : sizes) {
+            Path source = generate(size);
+            long bytes = Files.size(source);
+            System.out.println("Source: " + size + " MB");
+            report("reader, string lexer", bytes, () -> readerPath(source, SymbolsSystem.LexerEngine.STRING));
+            report("reader, dfa lexer", bytes, () -> readerPath(source, SymbolsSystem.LexerEngine.DFA));
+            report("mapped, stream lexer", bytes, () -> mappedPath(source));
+            Files.delete(source);
+        }
+    }
+
+    /**Generates a Pascal source of at least the given size*/
+    static Path generate(int megabytes) throws IOException {
+        Path path = Files.createTempFile("analyzer-bench", ".pas");
+        long target = megabytes * 1024L * 1024L;
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write(PROGRAM_HEADER);
+            for (long written = PROGRAM_HEADER.length(); written < target; written += PROGRAM_BODY.length()) {
+                writer.write(PROGRAM_BODY);
+            }
+            writer.write(PROGRAM_FOOTER);
+        }
+        return path;
+    }
+
+    /**Current path: reads lines and lexes every line separately*/
+    static int readerPath(Path source, SymbolsSystem.LexerEngine engine) throws IOException, UnmatchedSubstringException {
+        SymbolsSystem system = new SymbolsSystem(new PascalSymbolPack());
+        system.setLexerEngine(engine);
+        TokenStream tokens = system.newTokenStream();
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(source.toFile()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                system.process(line, tokens);
+                count += tokens.size();
+                tokens.clear();
+            }
+        }
+        return count;
+    }
+
+    /**Maps the source and lexes it straight from the mapping*/
+    static int mappedPath(Path source) throws IOException, UnmatchedSubstringException {
+        SymbolsSystem system = new SymbolsSystem(new PascalSymbolPack());
+        int[] count = {0};
+        try (MappedSourceReader reader = new MappedSourceReader(source)) {
+            system.process(reader, (kind, payload, text) -> count[0]++);
+        }
+        return count[0];
+    }
+
+    static void report(String name, long bytes, Run run) throws IOException, UnmatchedSubstringException {
+        long start = System.nanoTime();
+        int tokens = run.run();
+        long time = System.nanoTime() - start;
+        System.out.printf("  %-22s %8d ms %10.1f MB/s %12d lexemes%n", name, time / 1000000, bytes / 1048576.0 / (time / 1e9), tokens);
+    }
+
+    @FunctionalInterface
+    interface Run {
+        int run() throws IOException, UnmatchedSubstringException;
+    }
+}
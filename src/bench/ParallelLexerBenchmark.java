@@ -0,0 +1,50 @@
+package bench;
+
+import core.SymbolsSystem;
+import lexis.PascalSymbolPack;
+import lexis.TokenStream;
+import lexis.UnmatchedSubstringException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compares sequential and parallel lexing of a whole generated source held in memory.
+ * Arguments are source sizes in megabytes, 10 and 100 by default
+ */
+public class ParallelLexerBenchmark {
+    public static void main(String[] args) throws IOException, UnmatchedSubstringException {
+        int[] sizes = args.length == 0 ? new int[]{10, 100} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        System.out.println("Processors: " + Runtime.getRuntime().availableProcessors());
+
+        //Warm up
+        Path warmUp = MappedInputBenchmark.generate(1);
+        String warmUpSource = new String(Files.readAllBytes(warmUp), StandardCharsets.UTF_8);
+        lex(warmUpSource, SymbolsSystem.LexerEngine.DFA);
+        lex(warmUpSource, SymbolsSystem.LexerEngine.PARALLEL);
+        Files.delete(warmUp);
+
+        for (int size : sizes) {
+            Path path = MappedInputBenchmark.generate(size);
+            String source = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+            long bytes = Files.size(path);
+            Files.delete(path);
+            System.out.println("Source: " + size + " MB");
+            MappedInputBenchmark.report("sequential dfa lexer", bytes, () -> lex(source, SymbolsSystem.LexerEngine.DFA));
+            MappedInputBenchmark.report("parallel dfa lexer", bytes, () -> lex(source, SymbolsSystem.LexerEngine.PARALLEL));
+        }
+    }
+
+    static int lex(String source, SymbolsSystem.LexerEngine engine) throws UnmatchedSubstringException {
+        SymbolsSystem system = new SymbolsSystem(new PascalSymbolPack());
+        system.setLexerEngine(engine);
+        TokenStream tokens = system.newTokenStream();
+        system.process(source, tokens);
+        return tokens.size();
+    }
+}
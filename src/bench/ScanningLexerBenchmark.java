@@ -0,0 +1,64 @@
+package bench;
+
+import core.SymbolsSystem;
+import lexis.PascalSymbolPack;
+import lexis.TokenStream;
+import lexis.UnmatchedSubstringException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Compares lexer engines on lines of a generated source held in memory.
+ * Arguments are source sizes in megabytes, 10 by default
+ */
+public class ScanningLexerBenchmark {
+    private static final SymbolsSystem.LexerEngine[] ENGINES = {
+            SymbolsSystem.LexerEngine.STRING,
+            SymbolsSystem.LexerEngine.DFA,
+            SymbolsSystem.LexerEngine.SCAN,
+            SymbolsSystem.LexerEngine.COMPILED
+    };
+
+    public static void main(String[] args) throws IOException, UnmatchedSubstringException {
+        int[] sizes = args.length == 0 ? new int[]{10} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+
+        //Warm up
+        Path warmUp = MappedInputBenchmark.generate(1);
+        List<String> warmUpLines = Files.readAllLines(warmUp, StandardCharsets.UTF_8);
+        for (SymbolsSystem.LexerEngine engine : ENGINES) {
+            lex(warmUpLines, engine);
+        }
+        Files.delete(warmUp);
+
+        for (int size : sizes) {
+            Path path = MappedInputBenchmark.generate(size);
+            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            long bytes = Files.size(path);
+            Files.delete(path);
+            System.out.println("Source: " + size + " MB");
+            for (SymbolsSystem.LexerEngine engine : ENGINES) {
+                MappedInputBenchmark.report(engine.name().toLowerCase() + " lexer", bytes, () -> lex(lines, engine));
+            }
+        }
+    }
+
+    static int lex(List<String> lines, SymbolsSystem.LexerEngine engine) throws UnmatchedSubstringException {
+        SymbolsSystem system = new SymbolsSystem(new PascalSymbolPack());
+        system.setLexerEngine(engine);
+        TokenStream tokens = system.newTokenStream();
+        int count = 0;
+        for (String line : lines) {
+            system.process(line, tokens);
+            count += tokens.size();
+            tokens.clear();
+        }
+        return count;
+    }
+}
@@ -3,8 +3,10 @@ package core;
 import generator.CodeGenerator;
 import generator.PascalToPL1;
 import generator.SymbolData;
+import lexis.MappedSourceReader;
 import lexis.PascalSymbolPack;
 import lexis.SymbolPack;
+import lexis.TokenStream;
 import lexis.UnmatchedSubstringException;
 import syntax.OperationResult;
 import syntax.PascalSimpleSyntaxPack;
@@ -12,9 +14,8 @@ import syntax.PatternSearchException;
 import syntax.SyntaxPack;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Map;
 
 public class AnalyzerMain {
@@ -25,6 +26,47 @@ public class AnalyzerMain {
         
         String fileNameIn = "input.txt";
         String fileNameOut = "output.txt";
+        //Memory maps the input, the DFA lexer lexes it as a whole, other lexers line by line as without the mapping
+        boolean mapped = Arrays.asList(args).contains("--mapped");
+        //Lexer engine, one of SymbolsSystem.LexerEngine names in any case
+        SymbolsSystem.LexerEngine lexerEngine = SymbolsSystem.LexerEngine.STRING;
+        //Memoizes results of syntax symbols, parsing in linear time
+        boolean packrat = Arrays.asList(args).contains("--packrat");
+        //Searches syntax patterns directly instead of running the compiled grammar, tracing operations to the syntax log
+        boolean patterns = Arrays.asList(args).contains("--patterns");
+        //Runs a parser generated from the compiled grammar and loaded in the process, requires a JDK
+        boolean generatedParser = Arrays.asList(args).contains("--generated");
+        //Reports up to this count of syntax errors, skipping lexemes up to synchronization symbols after each one
+        int errorLimit = 1;
+        for (String arg : args) {
+            if (arg.startsWith("--errors=")) {
+                try {
+                    errorLimit = Integer.parseInt(arg.substring("--errors=".length()));
+                }
+                catch (NumberFormatException e) {
+                    errorLimit = 0;
+                }
+                if (errorLimit < 1) {
+                    System.out.println("Usage: --errors=<n>, where n is a count of errors greater than 0");
+                    return;
+                }
+            }
+            if (arg.startsWith("--lexer=")) {
+                try {
+                    lexerEngine = SymbolsSystem.LexerEngine.valueOf(arg.substring("--lexer=".length()).toUpperCase());
+                }
+                catch (IllegalArgumentException e) {
+                    System.out.println("Usage: --lexer=<engine>, where engine is one of " + Arrays.toString(SymbolsSystem.LexerEngine.values()));
+                    return;
+                }
+            }
+        }
+        
+        //Only the compiled grammar recovers from errors, other engines are not replaced silently
+        if (errorLimit > 1 && (patterns || generatedParser)) {
+            System.out.println("Usage: --errors=<n> recovers with the compiled grammar only, it can not be used with --patterns or --generated");
+            return;
+        }
         
         //Reader object, reads from file
         BufferedReader reader;
@@ -34,9 +76,22 @@ public class AnalyzerMain {
         String inLine;
         //Output string, created by processing input string then passed to writer
         String outLine;
+        //Lexemes of the whole input, passed from lexer to parser
+        TokenStream tokens = new TokenStream(symbolPack);
         //Symbols dictionary object, contains information about symbols
         
         TDParsingSymbolsSystem td = new TDParsingSymbolsSystem(symbolPack, syntaxPack);
+        if (packrat) {
+            td.setMemoization(TDParsingSymbolsSystem.Memoization.ALL);
+        }
+        if (patterns) {
+            td.setParserEngine(TDParsingSymbolsSystem.ParserEngine.PATTERNS);
+        }
+        else if (generatedParser) {
+            td.setParserEngine(TDParsingSymbolsSystem.ParserEngine.GENERATED);
+        }
+        td.setErrorLimit(errorLimit);
+        td.setLexerEngine(lexerEngine);
         Lexer lexer = td;
         Parser parser = td;
         
@@ -51,56 +106,81 @@ public class AnalyzerMain {
     
         UnmatchedSubstringException fail = null;
         try {
-            //Create reader and writer
-            reader = new BufferedReader(new FileReader(fileNameIn));
+            //Create writer
             writer = new BufferedWriter(new FileWriter(fileNameOut));
             
             System.out.println("\nLexical analysis:");
             Logger.getInstance().logln("lexis", "\nLexical analysis:");
-            do {
-                //Reads a line
-                inLine = reader.readLine();
-                if (inLine != null) {
-                    System.out.println(inLine);
-                    Logger.getInstance().logln("lexis", inLine);
-                    try {
-                        //Processes line into lexemes
-                        String[] out = lexer.process(inLine);
-                        StringBuilder outLineBuilder = new StringBuilder();
-                        for (String s : out) {
-                            outLineBuilder.append(s).append(" ");
-                        }
+            if (mapped && lexerEngine == SymbolsSystem.LexerEngine.DFA) {
+                try (MappedSourceReader in = new MappedSourceReader(Paths.get(fileNameIn))) {
+                    lexer.process(in, tokens);
+                }
+                catch (UnmatchedSubstringException e) {
+                    System.out.println("Error: Failed to match substring: " + e.getUnmatchedSubstring());
+                    Logger.getInstance().logln("lexis", "Error: Failed to match substring: " + e.getUnmatchedSubstring());
+                    fail = e;
+                }
+                //Writes lexemes line by line using their positions, as the line reader does
+                StringBuilder outLineBuilder = new StringBuilder();
+                int line = 0;
+                for (int i = 0; i < tokens.size(); i++) {
+                    while (line < tokens.line(i)) {
                         outLine = outLineBuilder.toString();
-                        //Writes a line
                         System.out.println(outLine);
                         Logger.getInstance().logln("lexis", outLine);
                         writer.write(outLine);
+                        writer.newLine();
+                        outLineBuilder.setLength(0);
+                        line++;
                     }
-                    catch (UnmatchedSubstringException e) {
-                        System.out.println("Error: Failed to match substring: " + e.getUnmatchedSubstring());
-                        Logger.getInstance().logln("lexis", "Error: Failed to match substring: " + e.getUnmatchedSubstring());
-                        fail = e;
-                    }
-                    writer.newLine();
+                    outLineBuilder.append(tokens.getToken(i)).append(" ");
                 }
-            } while (inLine != null);
-            //Closes reader and writer after use
-            reader.close();
-            writer.close();
-    
-            reader = new BufferedReader(new FileReader(fileNameOut));
-            List<String> data = new ArrayList<>();
-            do {
-                //Reads a line
-                inLine = reader.readLine();
-                if (inLine != null) {
-                    String[] s = inLine.split(" ");
-                    Collections.addAll(data, s);
-                }
-            } while (inLine != null);
-            //Closes reader and writer after use
-            reader.close();
-            writer.close();
+                outLine = outLineBuilder.toString();
+                System.out.println(outLine);
+                Logger.getInstance().logln("lexis", outLine);
+                writer.write(outLine);
+                writer.newLine();
+                writer.close();
+            }
+            else {
+                //Create reader
+                reader = new BufferedReader(mapped ? new MappedSourceReader(Paths.get(fileNameIn)) : new FileReader(fileNameIn));
+                //Number of the line being read, stored in lexeme positions
+                int lineNumber = 0;
+                do {
+                    //Reads a line
+                    inLine = reader.readLine();
+                    if (inLine != null) {
+                        System.out.println(inLine);
+                        Logger.getInstance().logln("lexis", inLine);
+                        try {
+                            //Processes line into lexemes
+                            int lineStart = tokens.size();
+                            tokens.setLine(lineNumber);
+                            lexer.process(inLine, tokens);
+                            StringBuilder outLineBuilder = new StringBuilder();
+                            for (String s : tokens.toStrings(lineStart, tokens.size())) {
+                                outLineBuilder.append(s).append(" ");
+                            }
+                            outLine = outLineBuilder.toString();
+                            //Writes a line
+                            System.out.println(outLine);
+                            Logger.getInstance().logln("lexis", outLine);
+                            writer.write(outLine);
+                        }
+                        catch (UnmatchedSubstringException e) {
+                            System.out.println("Error: Failed to match substring: " + e.getUnmatchedSubstring());
+                            Logger.getInstance().logln("lexis", "Error: Failed to match substring: " + e.getUnmatchedSubstring());
+                            fail = e;
+                        }
+                        writer.newLine();
+                        lineNumber++;
+                    }
+                } while (inLine != null);
+                //Closes reader and writer after use
+                reader.close();
+                writer.close();
+            }
     
             try {
                 if (fail != null) {
@@ -109,20 +189,29 @@ public class AnalyzerMain {
                 
                 System.out.println("\nSyntax analysis:");
                 Logger.getInstance().logln("syntax", "\nSyntax analysis:");
-                System.out.println("Data size: " + data.size());
-                Logger.getInstance().logln("syntax", "Data size: " + data.size());
+                System.out.println("Data size: " + tokens.size());
+                Logger.getInstance().logln("syntax", "Data size: " + tokens.size());
                 
-                OperationResult result = parser.process(data.toArray(new String[0]));
+                OperationResult result = parser.process(tokens);
     
                 if (result.isSuccess()) {
                     outLine = result.toString();
                 }
                 else {
-                    outLine = result.getError().toString();
-                    try {
-                        outLine += "\nSymbol " + result.getError().getSymbol() + " is \"" + td.getSymbol(Integer.parseInt(result.getError().getSymbol())) + "\"";
+                    StringBuilder outLineBuilder = new StringBuilder();
+                    for (OperationResult.SyntaxError error : result.getErrors()) {
+                        if (outLineBuilder.length() > 0) {
+                            outLineBuilder.append("\n");
+                        }
+                        outLineBuilder.append(error).append(describePosition(tokens, error.getIndex()));
+                        try {
+                            //Identifiers and literals have no symbol code, so the line is only written for reserved symbols
+                            String symbol = td.getSymbol(Integer.parseInt(error.getSymbol()));
+                            outLineBuilder.append("\nSymbol ").append(error.getSymbol()).append(" is \"").append(symbol).append("\"");
+                        }
+                        catch (NumberFormatException ignored) {}
                     }
-                    catch (NumberFormatException ignored) {}
+                    outLine = outLineBuilder.toString();
                 }
                 
                 System.out.println("\nSyntax analysis result:");
@@ -139,8 +228,8 @@ public class AnalyzerMain {
                 }
                 //lexer.getIdData().forEach((i, d) -> Logger.getInstance().logln("syntax", i + ": " + d.getType()));
     
-                //Convert output to data tree
-                SymbolData sd = SymbolData.readString(outLine);
+                //Convert output to data tree, reading the string form only if the parser did not build the tree
+                SymbolData sd = result.isSuccess() && result.getTree() != null ? SymbolData.fromTree(result.getTree()) : SymbolData.readString(outLine);
                 System.out.println(sd);
                 
                 //Generate code
@@ -155,14 +244,14 @@ public class AnalyzerMain {
             }
             catch (PatternSearchException e) {
                 System.out.println("======================================================================================");
-                System.out.println("Error in syntax pattern search in symbol '" + e.getName() + "', position: " + e.getIndex());
+                System.out.println("Error in syntax pattern search in symbol '" + e.getName() + "', position: " + e.getIndex() + describePosition(tokens, e.getIndex()));
                 System.out.println(e.getData());
                 System.out.println("======================================================================================");
                 Logger.getInstance().logln("syntax", "======================================================================================");
-                Logger.getInstance().logln("syntax", "Error in syntax pattern search in symbol '" + e.getName() + "', position: " + e.getIndex());
+                Logger.getInstance().logln("syntax", "Error in syntax pattern search in symbol '" + e.getName() + "', position: " + e.getIndex() + describePosition(tokens, e.getIndex()));
                 Logger.getInstance().logln("syntax", e.getData());
                 Logger.getInstance().logln("syntax", "======================================================================================");
-                Logger.getInstance().logln("syntaxResult", "Error in syntax pattern search in symbol '" + e.getName() + "', position: " + e.getIndex());
+                Logger.getInstance().logln("syntaxResult", "Error in syntax pattern search in symbol '" + e.getName() + "', position: " + e.getIndex() + describePosition(tokens, e.getIndex()));
                 Logger.getInstance().logln("syntaxResult", e.getData());
             } catch (UnmatchedSubstringException e) {
                 System.out.println("Error: Failed to match substring: " + e.getUnmatchedSubstring());
@@ -533,4 +622,12 @@ public class AnalyzerMain {
         
         Logger.getInstance().close();
     }
+    
+    /**Returns source line and column of the lexeme at index for error messages, or empty string if unknown*/
+    private static String describePosition(TokenStream tokens, int index) {
+        if (index < 0 || index >= tokens.size() || tokens.position(index) == TokenStream.NO_POSITION) {
+            return "";
+        }
+        return " (line " + (tokens.line(index) + 1) + ", column " + (tokens.column(index) + 1) + ")";
+    }
 }
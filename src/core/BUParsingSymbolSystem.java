@@ -1,12 +1,12 @@
 package core;
 
 import lexis.SymbolPack;
+import lexis.TokenStream;
 import syntax.OperationResult;
 import syntax.PrecedenceTable;
 import syntax.SyntaxPack;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**Operator precedence parser*/
@@ -23,19 +23,28 @@ public class BUParsingSymbolSystem extends SymbolsSystem implements Parser {
     
     @Override
     public OperationResult process(String[] input) {
-        List<String> data = new ArrayList<>(Arrays.asList(input));
+        return process(TokenStream.fromStrings(input, getIdentifierCode(), getLiteralCode()));
+    }
+    
+    @Override
+    public OperationResult process(TokenStream input) {
+        //Indices of lexemes still on the stack
+        int[] data = new int[input.size()];
+        for (int x = 0; x < data.length; x++) {
+            data[x] = x;
+        }
         List<String> res = new ArrayList<>();
         
-        int k = data.size() - 1;
+        int k = data.length - 1;
         
         do {
             int i = 0;
-            String n1;
-            String n2;
+            int n1;
+            int n2;
             do {
                 i++;
-                n1 = data.get(i - 1);
-                n2 = data.get(i);
+                n1 = input.kind(data[i - 1]);
+                n2 = input.kind(data[i]);
             } while (table.get(n1, n2) != PrecedenceTable.Precedence.HIGHER && i < k);
             
             int j2 = i - 1;
@@ -43,25 +52,25 @@ public class BUParsingSymbolSystem extends SymbolsSystem implements Parser {
             
             do {
                 j1--;
-                n1 = data.get(j1);
-                n2 = data.get(j1 + 1);
+                n1 = input.kind(data[j1]);
+                n2 = input.kind(data[j1 + 1]);
             } while (table.get(n1, n2) != PrecedenceTable.Precedence.LOWER && j1 > 0);
     
             for (int x = j1 + 1; x <= j2; x++) {
-                res.add(data.get(x));
+                res.add(input.getToken(data[x]));
             }
             
             int j = j1;
             
             for (int x = i; x <= k; x++) {
                 j++;
-                data.set(j, data.get(x));
+                data[j] = data[x];
             }
             
             k -= (j2 - j1);
         } while (k > 1);
         
         String r = res.stream().reduce("", (a, b) -> a + " " + b);
-        return new OperationResult(0, input.length - 1, true, r, null);
+        return new OperationResult(0, input.size() - 1, true, r, null);
     }
 }
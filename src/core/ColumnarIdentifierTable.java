@@ -0,0 +1,178 @@
+package core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Identifier table keeping data in columns indexed by identifier: name positions, type codes and flags.
+ * Names are stored once in an arena and indexed by an open addressing table of ids,
+ * types are interned to small codes. get returns a detached copy of the columns, changing it does not change the table.
+ * Not thread safe
+ */
+public class ColumnarIdentifierTable implements IdentifierTable {
+    private static final int INITIAL_CAPACITY = 64;
+    //Slot values are ids shifted by one, so zero marks an empty slot
+    private static final int EMPTY = 0;
+    //Flag of identifiers which got a type
+    private static final byte TYPED = 1;
+
+    private final NameArena arena;
+    private int[] offsets = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int[] types = new int[INITIAL_CAPACITY];
+    private byte[] flags = new byte[INITIAL_CAPACITY];
+    private int size = 0;
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+    //Type names by code, code 0 is the type of undeclared identifiers
+    private final List<String> typeNames = new ArrayList<>();
+    private final Map<String, Integer> typeCodes = new HashMap<>();
+    private final List<IdData> view = new ListView(this);
+
+    public ColumnarIdentifierTable() {
+        this(NameArena.heap());
+    }
+
+    /**Creates a table storing names in the arena, which should be empty and not shared*/
+    public ColumnarIdentifierTable(@NotNull NameArena arena) {
+        this.arena = arena;
+        typeCode(IdData.NO_TYPE);
+    }
+
+    @Override
+    public boolean add(@NotNull String name) {
+        int h = hash(name);
+        int mask = slots.length - 1;
+        int i = h & mask;
+        for (; slots[i] != EMPTY; i = (i + 1) & mask) {
+            if (matches(slots[i] - 1, h, name)) {
+                return false;
+            }
+        }
+
+        if (size == offsets.length) {
+            grow();
+            mask = slots.length - 1;
+            i = h & mask;
+            while (slots[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+        }
+        offsets[size] = arena.append(name);
+        lengths[size] = name.length();
+        hashes[size] = h;
+        slots[i] = ++size;
+        return true;
+    }
+
+    @Override
+    public int find(@NotNull String name) {
+        int h = hash(name);
+        int mask = slots.length - 1;
+        for (int i = h & mask; slots[i] != EMPTY; i = (i + 1) & mask) {
+            int id = slots[i] - 1;
+            if (matches(id, h, name)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(int id, int hash, @NotNull String name) {
+        return hashes[id] == hash && lengths[id] == name.length() && arena.regionEquals(offsets[id], name);
+    }
+
+    @Nullable
+    @Override
+    public IdData get(int id) {
+        if (id < 0 || id >= size) {
+            return null;
+        }
+        IdData data = new IdData();
+        data.setKey(id);
+        data.setName(getName(id));
+        data.setType(getType(id));
+        return data;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @NotNull
+    @Override
+    public String getName(int id) {
+        check(id);
+        return arena.get(offsets[id], lengths[id]);
+    }
+
+    @Override
+    public String getType(int id) {
+        check(id);
+        return typeNames.get(types[id]);
+    }
+
+    @Override
+    public void setType(int id, String type) {
+        check(id);
+        types[id] = typeCode(type);
+        flags[id] |= TYPED;
+    }
+
+    /**Checks whether the identifier with index got a type*/
+    public boolean isTyped(int id) {
+        check(id);
+        return (flags[id] & TYPED) != 0;
+    }
+
+    @NotNull
+    @Override
+    public List<IdData> asList() {
+        return view;
+    }
+
+    private void check(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("Id with index " + id + " does not exist");
+        }
+    }
+
+    private int typeCode(String type) {
+        Integer code = typeCodes.get(type);
+        if (code == null) {
+            code = typeNames.size();
+            typeNames.add(type);
+            typeCodes.put(type, code);
+        }
+        return code;
+    }
+
+    private static int hash(@NotNull String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**Doubles the columns and the index, which stays at most half full*/
+    private void grow() {
+        int capacity = offsets.length * 2;
+        offsets = Arrays.copyOf(offsets, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        types = Arrays.copyOf(types, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+
+        slots = new int[capacity * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int i = hashes[id] & mask;
+            while (slots[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = id + 1;
+        }
+    }
+}
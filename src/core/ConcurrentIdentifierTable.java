@@ -0,0 +1,106 @@
+package core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Identifier table which can be shared between threads.
+ * Each distinct name gets exactly one index, indexes stay dense under contention.
+ * Adding locks a bin of the name map, data by index is kept in chunks allocated on demand,
+ * so lookups by index do not lock. An index is counted in size only after its data is stored
+ */
+public class ConcurrentIdentifierTable implements IdentifierTable {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int MAX_CHUNKS = 1 << 16;
+    
+    private final ConcurrentHashMap<String, IdData> names = new ConcurrentHashMap<>();
+    private final AtomicInteger counter = new AtomicInteger();
+    private final AtomicInteger published = new AtomicInteger();
+    private final AtomicReferenceArray<AtomicReferenceArray<IdData>> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+    
+    @Override
+    public boolean add(@NotNull String name) {
+        if (names.containsKey(name)) {
+            return false;
+        }
+        boolean[] added = {false};
+        //Index is taken inside the mapping function, which runs at most once per name.
+        //Everything which can fail is done before the index is taken, so no index is left without data
+        names.computeIfAbsent(name, n -> {
+            IdData data = new IdData();
+            data.setName(n);
+            int id = nextIndex();
+            data.setKey(id);
+            chunks.get(id >>> CHUNK_BITS).set(id & (CHUNK_SIZE - 1), data);
+            added[0] = true;
+            return data;
+        });
+        if (added[0]) {
+            publish();
+        }
+        return added[0];
+    }
+    
+    @Override
+    public int find(@NotNull String name) {
+        IdData data = names.get(name);
+        return data == null ? -1 : data.getKey();
+    }
+    
+    @Nullable
+    @Override
+    public IdData get(int id) {
+        if (id < 0 || id >= CHUNK_SIZE * MAX_CHUNKS) {
+            return null;
+        }
+        //Data which is still being stored by another thread is not there yet
+        AtomicReferenceArray<IdData> chunk = chunks.get(id >>> CHUNK_BITS);
+        return chunk == null ? null : chunk.get(id & (CHUNK_SIZE - 1));
+    }
+    
+    @Override
+    public int size() {
+        return published.get();
+    }
+    
+    /**
+     * Takes the next index, leaving the counter unchanged if the table is full.
+     * Chunk of the index is allocated before the index is taken
+     * @throws IllegalStateException If the table is full
+     */
+    private int nextIndex() {
+        int id;
+        do {
+            id = counter.get();
+            if (id >= CHUNK_SIZE * MAX_CHUNKS) {
+                throw new IllegalStateException("Identifier table is full");
+            }
+            chunk(id);
+        } while (!counter.compareAndSet(id, id + 1));
+        return id;
+    }
+    
+    /**Moves size over all indexes which have their data stored, every adding thread helps after storing its own*/
+    private void publish() {
+        int size;
+        while ((size = published.get()) < counter.get() && get(size) != null) {
+            published.compareAndSet(size, size + 1);
+        }
+    }
+    
+    @NotNull
+    private AtomicReferenceArray<IdData> chunk(int id) {
+        int index = id >>> CHUNK_BITS;
+        AtomicReferenceArray<IdData> chunk = chunks.get(index);
+        if (chunk == null) {
+            chunks.compareAndSet(index, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+            chunk = chunks.get(index);
+        }
+        return chunk;
+    }
+}
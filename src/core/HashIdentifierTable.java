@@ -0,0 +1,86 @@
+package core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**Identifier table on a pair of hash storages, not thread safe*/
+public class HashIdentifierTable implements IdentifierTable {
+    
+    /**Available hash storage implementations*/
+    public enum Storage {
+        /**HashStorage with a fixed number of buckets*/
+        CHAINED,
+        /**OpenHashStorage growing with the number of identifiers*/
+        OPEN
+    }
+    
+    private static final int BUCKETS = 100;
+    
+    private final Map<String, Integer> idMap;
+    private final Map<Integer, IdData> idData;
+    
+    public HashIdentifierTable() {
+        this(Storage.OPEN);
+    }
+    
+    public HashIdentifierTable(@NotNull Storage storage) {
+        if (storage == Storage.CHAINED) {
+            idMap = new HashStorage<>(BUCKETS, HashIdentifierTable::hash);
+            idData = new HashStorage<>(BUCKETS, i -> i);
+        }
+        else {
+            idMap = new OpenHashStorage<>(BUCKETS, HashIdentifierTable::hash);
+            idData = new OpenHashStorage<>(BUCKETS, i -> i);
+        }
+    }
+    
+    /**Returns statistics of the name storage, or null if it is not chained*/
+    @Nullable
+    public HashStorage.Statistics getNameStatistics() {
+        return idMap instanceof HashStorage ? ((HashStorage<String, Integer>) idMap).getStatistics() : null;
+    }
+    
+    private static int hash(@NotNull String s) {
+        int res = 1;
+        final int prime = 1049;
+        
+        for (int i = 0; i < s.length(); i++) {
+            res = res * prime + s.charAt(i);
+        }
+        
+        return res;
+    }
+    
+    @Override
+    public boolean add(@NotNull String name) {
+        if (!idMap.containsKey(name)) {
+            IdData data = new IdData();
+            data.setKey(idMap.size());
+            data.setName(name);
+            
+            idMap.put(name, idMap.size());
+            idData.put(idMap.get(name), data);
+            return true;
+        }
+        return false;
+    }
+    
+    @Override
+    public int find(@NotNull String name) {
+        Integer id = idMap.get(name);
+        return id == null ? -1 : id;
+    }
+    
+    @Nullable
+    @Override
+    public IdData get(int id) {
+        return idData.get(id);
+    }
+    
+    @Override
+    public int size() {
+        return idData.size();
+    }
+}
@@ -4,16 +4,35 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
-import java.util.function.Function;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntFunction;
 
+/**
+ * Hash map chaining entries over a fixed number of buckets.
+ * Removed entries stay in the table until there are more of them than live ones
+ */
 public class HashStorage<K, V> implements Map<K, V> {
+    //Removed entries tolerated regardless of the live count
+    private static final int COMPACT_THRESHOLD = 16;
+    
     private int size;
     private int pointer = -1;
+    private int live = 0;
+    private int removed = 0;
     private List<Integer> hashTable;
     private List<Tuple<K, V>> table = new ArrayList<>();
-    private Function<K, Integer> hasher;
-    
-    HashStorage(int size, Function<K, Integer> hasher) {
+    private ToIntFunction<K> hasher;
+    //Lookups and chain elements visited by them, for statistics
+    private long lookups = 0;
+    private long probes = 0;
+    //Structural modifications, checked by iterators of views
+    private int modCount = 0;
+    
+    /**
+     * @param size Number of buckets
+     * @param hasher Hash function for keys, may return any int. String::hashCode reuses the hash cached in strings
+     */
+    public HashStorage(int size, ToIntFunction<K> hasher) {
         if (size <= 0) {
             throw new IllegalArgumentException("Map size must be greater than 0: " + size);
         }
@@ -25,20 +44,19 @@ public class HashStorage<K, V> implements Map<K, V> {
         this.hasher = hasher;
     }
     
+    /**Returns index in hash table for the key, hasher may return negative values*/
+    private int bucket(K key) {
+        return Math.floorMod(hasher.applyAsInt(key), size);
+    }
+    
     @Override
     public int size() {
-        int[] s = {0};
-        table.forEach(el -> {
-            if (el.getKey() != null) {
-                s[0]++;
-            }
-        });
-        return s[0];
+        return live;
     }
     
     @Override
     public boolean isEmpty() {
-        return pointer == -1 || size() == 0;
+        return live == 0;
     }
     
     @Override
@@ -56,7 +74,9 @@ public class HashStorage<K, V> implements Map<K, V> {
             return false;
         }
         
-        int hash = hasher.apply(k) % size;
+        int hash = bucket(k);
+        
+        lookups++;
         
         if (hashTable.get(hash) == -1) {
             return false;
@@ -64,6 +84,7 @@ public class HashStorage<K, V> implements Map<K, V> {
         else {
             Tuple<K, V> el = table.get(hashTable.get(hash));
             while (true) {
+                probes++;
                 if (el.getKey() != null && el.getKey().equals(k)) {
                     return true;
                 }
@@ -87,7 +108,7 @@ public class HashStorage<K, V> implements Map<K, V> {
             return false;
         }
         for (Tuple<K, V> el : table) {
-            if (el.getKey() != null && v != null ? el.getData().equals(v) : el.getData() == null) {
+            if (el.getKey() != null && Objects.equals(el.getData(), v)) {
                 return true;
             }
         }
@@ -109,7 +130,9 @@ public class HashStorage<K, V> implements Map<K, V> {
             return null;
         }
     
-        int hash = hasher.apply(k) % size;
+        int hash = bucket(k);
+    
+        lookups++;
     
         if (hashTable.get(hash) == -1) {
             return null;
@@ -117,6 +140,7 @@ public class HashStorage<K, V> implements Map<K, V> {
         else {
             Tuple<K, V> el = table.get(hashTable.get(hash));
             while (true) {
+                probes++;
                 if (el.getKey() != null && el.getKey().equals(k)) {
                     return el.getData();
                 }
@@ -148,17 +172,22 @@ public class HashStorage<K, V> implements Map<K, V> {
             return null;
         }
     
-        int hash = hasher.apply(k) % size;
+        int hash = bucket(k);
+    
+        lookups++;
     
         if (hashTable.get(hash) == -1) {
             pointer++;
             hashTable.set(hash, pointer);
             table.add(pointer, new Tuple<>(k, v));
+            live++;
+            modCount++;
             return null;
         }
         else {
             Tuple<K, V> el = table.get(hashTable.get(hash));
             while (true) {
+                probes++;
                 if (el.getKey() != null && el.getKey().equals(k)) {
                     V data = el.getData();
                     el.setData(v);
@@ -172,6 +201,8 @@ public class HashStorage<K, V> implements Map<K, V> {
             pointer++;
             table.add(pointer, new Tuple<>(k, v));
             el.setChain(pointer);
+            live++;
+            modCount++;
         }
     
         return null;
@@ -192,7 +223,9 @@ public class HashStorage<K, V> implements Map<K, V> {
             return null;
         }
     
-        int hash = hasher.apply(k) % size;
+        int hash = bucket(k);
+    
+        lookups++;
     
         if (hashTable.get(hash) == -1) {
             return null;
@@ -200,9 +233,14 @@ public class HashStorage<K, V> implements Map<K, V> {
         else {
             Tuple<K, V> el = table.get(hashTable.get(hash));
             while (true) {
+                probes++;
                 if (el.getKey() != null && el.getKey().equals(k)) {
-                    el.setKey(null);
-                    return el.getData();
+                    V data = el.getData();
+                    unlink(el);
+                    if (removed > COMPACT_THRESHOLD && removed > live) {
+                        compact();
+                    }
+                    return data;
                 }
                 if (el.getChain() == -1) {
                     break;
@@ -214,6 +252,15 @@ public class HashStorage<K, V> implements Map<K, V> {
         return null;
     }
     
+    /**Marks the entry removed, it stays in its chain until compaction*/
+    private void unlink(@NotNull Tuple<K, V> el) {
+        el.setKey(null);
+        el.setData(null);
+        live--;
+        removed++;
+        modCount++;
+    }
+    
     @Override
     public void putAll(@NotNull Map m) {
         for (Object key : m.keySet()) {
@@ -227,36 +274,196 @@ public class HashStorage<K, V> implements Map<K, V> {
         for (int i = 0; i < hashTable.size(); i++) {
             hashTable.set(i, -1);
         }
+        pointer = -1;
+        live = 0;
+        removed = 0;
+        modCount++;
     }
     
+    /**Drops removed entries from the table and links live ones again, keeping their order*/
+    private void compact() {
+        List<Tuple<K, V>> old = table;
+        table = new ArrayList<>(live);
+        int[] tails = new int[size];
+        for (int i = 0; i < size; i++) {
+            hashTable.set(i, -1);
+        }
+        
+        for (Tuple<K, V> el : old) {
+            if (el.getKey() == null) {
+                continue;
+            }
+            int index = table.size();
+            int hash = bucket(el.getKey());
+            el.setChain(-1);
+            if (hashTable.get(hash) == -1) {
+                hashTable.set(hash, index);
+            }
+            else {
+                table.get(tails[hash]).setChain(index);
+            }
+            tails[hash] = index;
+            table.add(el);
+        }
+        pointer = table.size() - 1;
+        removed = 0;
+    }
+    
+    /**Live view of keys, removing a key removes its entry*/
     @NotNull
     @Override
     public Set<K> keySet() {
-        Set<K> set = new HashSet<>();
-        for (Tuple<K, V> el : table) {
-            if (el.getKey() != null) {
-                set.add(el.getKey());
+        return new AbstractSet<K>() {
+            @NotNull
+            @Override
+            public Iterator<K> iterator() {
+                return new TableIterator<K>() {
+                    @Override
+                    K value(Tuple<K, V> el) {
+                        return el.getKey();
+                    }
+                };
             }
-        }
-        return set;
+            
+            @Override
+            public int size() {
+                return live;
+            }
+            
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+            
+            @Override
+            public boolean remove(Object o) {
+                if (!containsKey(o)) {
+                    return false;
+                }
+                HashStorage.this.remove(o);
+                return true;
+            }
+            
+            @Override
+            public void clear() {
+                HashStorage.this.clear();
+            }
+        };
     }
     
+    /**Live view of values*/
     @NotNull
     @Override
     public Collection<V> values() {
-        return table.stream().filter(el -> el.getKey() != null).map(Tuple::getData).collect(ArrayList::new, List::add, List::addAll);
+        return new AbstractCollection<V>() {
+            @NotNull
+            @Override
+            public Iterator<V> iterator() {
+                return new TableIterator<V>() {
+                    @Override
+                    V value(Tuple<K, V> el) {
+                        return el.getData();
+                    }
+                };
+            }
+            
+            @Override
+            public int size() {
+                return live;
+            }
+            
+            @Override
+            public boolean contains(Object o) {
+                return containsValue(o);
+            }
+            
+            @Override
+            public void clear() {
+                HashStorage.this.clear();
+            }
+        };
     }
     
+    /**Live view of entries, setting a value of an entry writes it to the storage*/
     @NotNull
     @Override
     public Set<Entry<K, V>> entrySet() {
-        Set<Entry<K, V>> set = new HashSet<>();
-        for (Tuple<K, V> el : table) {
+        return new AbstractSet<Entry<K, V>>() {
+            @NotNull
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new TableIterator<Entry<K, V>>() {
+                    @Override
+                    Entry<K, V> value(Tuple<K, V> el) {
+                        return new SEntry<>(el);
+                    }
+                };
+            }
+            
+            @Override
+            public int size() {
+                return live;
+            }
+            
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Entry)) {
+                    return false;
+                }
+                Entry<?, ?> e = (Entry<?, ?>) o;
+                return containsKey(e.getKey()) && Objects.equals(get(e.getKey()), e.getValue());
+            }
+            
+            @Override
+            public void clear() {
+                HashStorage.this.clear();
+            }
+        };
+    }
+    
+    /**Passes live entries to the action in one pass over the table*/
+    @Override
+    public void forEach(@NotNull BiConsumer<? super K, ? super V> action) {
+        int expected = modCount;
+        List<Tuple<K, V>> tuples = table;
+        for (int i = 0; i < tuples.size(); i++) {
+            Tuple<K, V> el = tuples.get(i);
             if (el.getKey() != null) {
-                set.add(new SEntry<>(el.getKey(), el.getData()));
+                action.accept(el.getKey(), el.getData());
+            }
+            if (modCount != expected) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+    
+    /**Collects bucket occupancy and chain lengths, chains include removed entries still linked*/
+    @NotNull
+    public Statistics getStatistics() {
+        int occupied = 0;
+        int maxChain = 0;
+        long chained = 0;
+        for (int i = 0; i < size; i++) {
+            int index = hashTable.get(i);
+            if (index == -1) {
+                continue;
             }
+            int length = 0;
+            while (index != -1) {
+                length++;
+                index = table.get(index).getChain();
+            }
+            occupied++;
+            chained += length;
+            maxChain = Math.max(maxChain, length);
         }
-        return set;
+        return new Statistics(size, occupied, live, removed, maxChain, occupied == 0 ? 0 : (double) chained / occupied, lookups, probes);
+    }
+    
+    /**Resets counters of lookups and probes*/
+    public void resetStatistics() {
+        lookups = 0;
+        probes = 0;
     }
     
     @Override
@@ -275,6 +482,77 @@ public class HashStorage<K, V> implements Map<K, V> {
         return Objects.hash(size, pointer, hashTable, hasher);
     }
     
+    /**Snapshot of hash storage shape and lookup counters*/
+    public static class Statistics {
+        private final int buckets;
+        private final int occupiedBuckets;
+        private final int entries;
+        private final int removed;
+        private final int maxChain;
+        private final double meanChain;
+        private final long lookups;
+        private final long probes;
+        
+        Statistics(int buckets, int occupiedBuckets, int entries, int removed, int maxChain, double meanChain, long lookups, long probes) {
+            this.buckets = buckets;
+            this.occupiedBuckets = occupiedBuckets;
+            this.entries = entries;
+            this.removed = removed;
+            this.maxChain = maxChain;
+            this.meanChain = meanChain;
+            this.lookups = lookups;
+            this.probes = probes;
+        }
+        
+        public int getBuckets() {
+            return buckets;
+        }
+        
+        public int getOccupiedBuckets() {
+            return occupiedBuckets;
+        }
+        
+        /**Returns count of live entries*/
+        public int getEntries() {
+            return entries;
+        }
+        
+        /**Returns count of removed entries not compacted yet*/
+        public int getRemoved() {
+            return removed;
+        }
+        
+        public int getMaxChain() {
+            return maxChain;
+        }
+        
+        /**Returns mean chain length over occupied buckets*/
+        public double getMeanChain() {
+            return meanChain;
+        }
+        
+        /**Returns count of lookups by key since creation or reset*/
+        public long getLookups() {
+            return lookups;
+        }
+        
+        /**Returns count of chain elements compared by lookups since creation or reset*/
+        public long getProbes() {
+            return probes;
+        }
+        
+        /**Returns mean count of chain elements compared by one lookup*/
+        public double getMeanProbes() {
+            return lookups == 0 ? 0 : (double) probes / lookups;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("buckets %d/%d, entries %d (%d removed), chain max %d mean %.2f, lookups %d, probes %.2f per lookup",
+                    occupiedBuckets, buckets, entries, removed, maxChain, meanChain, lookups, getMeanProbes());
+        }
+    }
+    
     private static class Tuple<K, V> {
         private V data;
         private K key;
@@ -311,14 +589,63 @@ public class HashStorage<K, V> implements Map<K, V> {
         }
     }
     
-    static class SEntry<K, V> implements Entry<K, V> {
+    /**Iterator over live entries of the table, failing on modifications made outside of it*/
+    private abstract class TableIterator<T> implements Iterator<T> {
+        private final List<Tuple<K, V>> tuples = table;
+        private int next = skip(0);
+        private Tuple<K, V> last = null;
+        private int expected = modCount;
+        
+        abstract T value(Tuple<K, V> el);
+        
+        private int skip(int i) {
+            while (i < tuples.size() && tuples.get(i).getKey() == null) {
+                i++;
+            }
+            return i;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next < tuples.size();
+        }
+        
+        @Override
+        public T next() {
+            if (modCount != expected) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= tuples.size()) {
+                throw new NoSuchElementException();
+            }
+            last = tuples.get(next);
+            next = skip(next + 1);
+            return value(last);
+        }
+        
+        /**Leaves the removed entry in the table, so the iteration order stays valid*/
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException("No entry to remove");
+            }
+            if (modCount != expected) {
+                throw new ConcurrentModificationException();
+            }
+            unlink(last);
+            last = null;
+            expected = modCount;
+        }
+    }
     
-        private K key;
-        private V value;
+    /**Entry backed by a tuple of the table*/
+    static class SEntry<K, V> implements Entry<K, V> {
+        private final Tuple<K, V> tuple;
+        private final K key;
         
-        SEntry(K key, V value) {
-            this.key = key;
-            this.value = value;
+        SEntry(Tuple<K, V> tuple) {
+            this.tuple = tuple;
+            this.key = tuple.getKey();
         }
         
         @Override
@@ -328,14 +655,34 @@ public class HashStorage<K, V> implements Map<K, V> {
     
         @Override
         public V getValue() {
-            return value;
+            return tuple.getData();
         }
     
         @Override
         public V setValue(V value) {
-            V temp = this.value;
-            this.value = value;
+            if (tuple.getKey() == null) {
+                throw new IllegalStateException("Entry was removed");
+            }
+            V temp = tuple.getData();
+            tuple.setData(value);
             return temp;
         }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) return false;
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+        }
+        
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
     }
 }
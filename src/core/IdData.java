@@ -1,7 +1,10 @@
 package core;
 
 public class IdData {
-    private String type = "NO_VALUE";
+    /**Type of identifiers not declared yet*/
+    public static final String NO_TYPE = "NO_VALUE";
+    
+    private String type = NO_TYPE;
     private String name;
     private int key;
 
@@ -31,6 +34,6 @@ public class IdData {
     
     @Override
     public String toString() {
-        return key + ":" + name + ":" + type;
+        return getKey() + ":" + getName() + ":" + getType();
     }
 }
@@ -0,0 +1,86 @@
+package core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**Storage giving every distinct identifier name a dense index, starting from 0*/
+public interface IdentifierTable {
+    /**
+     * Adds an identifier if it doesn't exist
+     * @return True if the identifier was added by this call
+     */
+    boolean add(@NotNull String name);
+    
+    /**Returns index of the identifier or -1 if it doesn't exist*/
+    int find(@NotNull String name);
+    
+    /**
+     * Returns data of the identifier with index or null if it doesn't exist.
+     * Tables may return a copy, so types are changed through setType of the table
+     */
+    @Nullable
+    IdData get(int id);
+    
+    /**Returns count of identifiers, all indexes below it are taken*/
+    int size();
+    
+    /**Returns name of the identifier with index, which must exist*/
+    @NotNull
+    default String getName(int id) {
+        IdData data = get(id);
+        if (data == null) {
+            throw new IllegalArgumentException("Id with index " + id + " does not exist");
+        }
+        return data.getName();
+    }
+    
+    /**Returns type of the identifier with index, which must exist*/
+    default String getType(int id) {
+        IdData data = get(id);
+        if (data == null) {
+            throw new IllegalArgumentException("Id with index " + id + " does not exist");
+        }
+        return data.getType();
+    }
+    
+    /**Sets type of the identifier with index, which must exist, tables returning copies from get override it*/
+    default void setType(int id, String type) {
+        IdData data = get(id);
+        if (data == null) {
+            throw new IllegalArgumentException("Id with index " + id + " does not exist");
+        }
+        data.setType(type);
+    }
+    
+    /**Returns read only view of identifiers by index, reflecting later additions*/
+    @NotNull
+    default List<IdData> asList() {
+        return new ListView(this);
+    }
+    
+    /**List view over the identifier table*/
+    class ListView extends AbstractList<IdData> implements RandomAccess {
+        private final IdentifierTable table;
+        
+        ListView(@NotNull IdentifierTable table) {
+            this.table = table;
+        }
+        
+        @Override
+        public IdData get(int index) {
+            if (index < 0 || index >= table.size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + table.size());
+            }
+            return table.get(index);
+        }
+        
+        @Override
+        public int size() {
+            return table.size();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package core;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.*;
+
+/**
+ * Compiles generated Java source in memory and loads the resulting classes.
+ * Requires a JDK, on a plain runtime the compiler is not available
+ */
+public class InMemoryCompiler {
+    private InMemoryCompiler() {}
+
+    /**Checks whether the running platform provides a Java compiler*/
+    public static boolean isAvailable() {
+        return ToolProvider.getSystemJavaCompiler() != null;
+    }
+
+    /**
+     * Compiles a source file containing the class and loads it.
+     * Generated code can use classes visible to the parent loader
+     * @throws IllegalStateException If the compiler is missing or compilation fails
+     */
+    @NotNull
+    public static Class<?> compile(@NotNull String className, @NotNull String source, @NotNull ClassLoader parent) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("Java compiler is not available, run on a JDK");
+        }
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<String, ByteArrayOutputStream> classes = new HashMap<>();
+        try (JavaFileManager manager = new MemoryFileManager(compiler.getStandardFileManager(diagnostics, null, null), classes)) {
+            List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-nowarn", "-g:none");
+            JavaFileObject file = new SourceFile(className, source);
+            boolean success = compiler.getTask(null, manager, diagnostics, options, null, Collections.singletonList(file)).call();
+            if (!success) {
+                StringBuilder message = new StringBuilder("Failed to compile " + className + ":");
+                for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+                    message.append("\n").append(d.getLineNumber()).append(": ").append(d.getMessage(null));
+                }
+                throw new IllegalStateException(message.toString());
+            }
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Failed to compile " + className, e);
+        }
+
+        Map<String, byte[]> bytes = new HashMap<>();
+        classes.forEach((name, out) -> bytes.put(name, out.toByteArray()));
+        try {
+            return new MemoryClassLoader(bytes, parent).loadClass(className);
+        }
+        catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Compiled class " + className + " not found", e);
+        }
+    }
+
+    /**Source file held in a string*/
+    private static class SourceFile extends SimpleJavaFileObject {
+        private final String source;
+
+        SourceFile(String className, String source) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    /**Class file written to memory*/
+    private static class ClassFile extends SimpleJavaFileObject {
+        private final ByteArrayOutputStream out;
+
+        ClassFile(String className, ByteArrayOutputStream out) {
+            super(URI.create("mem:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.out = out;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return out;
+        }
+    }
+
+    private static class MemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+        private final Map<String, ByteArrayOutputStream> classes;
+
+        MemoryFileManager(JavaFileManager fileManager, Map<String, ByteArrayOutputStream> classes) {
+            super(fileManager);
+            this.classes = classes;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            classes.put(className, out);
+            return new ClassFile(className, out);
+        }
+    }
+
+    /**Defines compiled classes, delegating everything else to the parent*/
+    private static class MemoryClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        MemoryClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+            super(parent);
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
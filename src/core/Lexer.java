@@ -1,12 +1,18 @@
 package core;
 
+import lexis.TokenConsumer;
+import lexis.TokenStream;
 import lexis.UnmatchedSubstringException;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.List;
 import java.util.Map;
 
 public interface Lexer {
     String[] process(String input) throws UnmatchedSubstringException;
+    void process(String input, TokenStream out) throws UnmatchedSubstringException;
+    void process(Reader input, TokenConsumer out) throws IOException, UnmatchedSubstringException;
     Map<String, IdData> getIdData();
     List<IdData> getIdList();
 }
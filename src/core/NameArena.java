@@ -0,0 +1,162 @@
+package core;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Append only storage of names in one contiguous block of chars, addressed by offset and length.
+ * The heap arena keeps a char array, the off-heap one a direct buffer outside of the collected heap
+ */
+public abstract class NameArena {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    protected int length = 0;
+
+    /**Creates an arena on a char array*/
+    @NotNull
+    public static NameArena heap() {
+        return new HeapArena();
+    }
+
+    /**Creates an arena on a direct byte buffer, two bytes per char*/
+    @NotNull
+    public static NameArena offHeap() {
+        return new DirectArena();
+    }
+
+    /**
+     * Appends the name and returns its offset
+     * @throws IllegalStateException If the arena is full
+     */
+    public int append(@NotNull String name) {
+        int offset = length;
+        ensureCapacity((long) length + name.length());
+        for (int i = 0; i < name.length(); i++) {
+            put(offset + i, name.charAt(i));
+        }
+        length += name.length();
+        return offset;
+    }
+
+    /**Checks whether chars at the offset are the same as the name, which has the same length*/
+    @Contract(pure = true)
+    public boolean regionEquals(int offset, @NotNull String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (charAt(offset + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**Creates a string of chars at the offset*/
+    @NotNull
+    public String get(int offset, int count) {
+        char[] chars = new char[count];
+        for (int i = 0; i < count; i++) {
+            chars[i] = charAt(offset + i);
+        }
+        return new String(chars);
+    }
+
+    /**Returns count of chars stored*/
+    @Contract(pure = true)
+    public int length() {
+        return length;
+    }
+
+    protected abstract char charAt(int index);
+
+    protected abstract void put(int index, char c);
+
+    /**Returns allocated capacity in chars*/
+    protected abstract int capacity();
+
+    /**Moves stored chars to a block of the new capacity*/
+    protected abstract void resize(int capacity);
+
+    /**Returns the largest capacity in chars the arena can allocate*/
+    protected int maxCapacity() {
+        return MAX_CAPACITY;
+    }
+
+    private void ensureCapacity(long needed) {
+        if (needed <= capacity()) {
+            return;
+        }
+        if (needed > maxCapacity()) {
+            throw new IllegalStateException("Name arena is full");
+        }
+        resize((int) Math.min(maxCapacity(), Math.max(needed, capacity() * 2L)));
+    }
+
+    private static class HeapArena extends NameArena {
+        private char[] chars = new char[INITIAL_CAPACITY];
+
+        @Override
+        protected char charAt(int index) {
+            return chars[index];
+        }
+
+        @Override
+        protected void put(int index, char c) {
+            chars[index] = c;
+        }
+
+        @Override
+        protected int capacity() {
+            return chars.length;
+        }
+
+        @Override
+        protected void resize(int capacity) {
+            chars = Arrays.copyOf(chars, capacity);
+        }
+
+        @NotNull
+        @Override
+        public String get(int offset, int count) {
+            return new String(chars, offset, count);
+        }
+    }
+
+    private static class DirectArena extends NameArena {
+        //Byte buffers are indexed by int, so the arena holds at most half of the maximal size in chars
+        private static final int MAX_CHARS = Integer.MAX_VALUE / 2;
+
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_CAPACITY * 2);
+
+        @Override
+        protected char charAt(int index) {
+            return buffer.getChar(index << 1);
+        }
+
+        @Override
+        protected void put(int index, char c) {
+            buffer.putChar(index << 1, c);
+        }
+
+        @Override
+        protected int capacity() {
+            return buffer.capacity() >> 1;
+        }
+
+        @Override
+        protected int maxCapacity() {
+            return MAX_CHARS;
+        }
+
+        @Override
+        protected void resize(int capacity) {
+            ByteBuffer resized = ByteBuffer.allocateDirect(capacity << 1);
+            ByteBuffer old = buffer.duplicate();
+            old.position(0).limit(length << 1);
+            resized.put(old);
+            buffer = resized;
+        }
+    }
+}
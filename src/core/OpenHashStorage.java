@@ -0,0 +1,396 @@
+package core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Hash map with open addressing over primitive slots, growing when the load factor is exceeded.
+ * Slots hold indexes into dense entry arrays, so iteration follows insertion order.
+ * Removed entries stay as tombstones until the next rehash compacts them.
+ * Null keys are not supported
+ */
+public class OpenHashStorage<K, V> extends AbstractMap<K, V> {
+    public static final float DEFAULT_LOAD_FACTOR = 0.5f;
+    private static final int MIN_CAPACITY = 16;
+    //Slot values are entry indexes shifted by one, so zero marks an empty slot
+    private static final int EMPTY = 0;
+
+    private final ToIntFunction<K> hasher;
+    private final float loadFactor;
+    private int[] slots;
+    private int mask;
+    private int[] hashes;
+    private Object[] keys;
+    private Object[] values;
+    //Entries in use including removed ones
+    private int entries = 0;
+    private int live = 0;
+    private int modCount = 0;
+    @Nullable
+    private Set<Entry<K, V>> entrySet;
+
+    /**
+     * @param expected Number of entries the storage holds without a rehash
+     * @param hasher Hash function for keys, may return any int
+     * @param loadFactor Maximal ratio of used slots, including tombstones, to all slots
+     */
+    public OpenHashStorage(int expected, @NotNull ToIntFunction<K> hasher, float loadFactor) {
+        if (expected <= 0) {
+            throw new IllegalArgumentException("Map size must be greater than 0: " + expected);
+        }
+        if (!(loadFactor > 0 && loadFactor < 1)) {
+            throw new IllegalArgumentException("Load factor must be between 0 and 1: " + loadFactor);
+        }
+        this.hasher = hasher;
+        this.loadFactor = loadFactor;
+        int capacity = capacityFor(expected);
+        slots = new int[capacity];
+        mask = capacity - 1;
+        hashes = new int[expected];
+        keys = new Object[expected];
+        values = new Object[expected];
+    }
+
+    public OpenHashStorage(int expected, @NotNull ToIntFunction<K> hasher) {
+        this(expected, hasher, DEFAULT_LOAD_FACTOR);
+    }
+
+    public OpenHashStorage(@NotNull ToIntFunction<K> hasher) {
+        this(MIN_CAPACITY, hasher);
+    }
+
+    public OpenHashStorage() {
+        this(MIN_CAPACITY, Object::hashCode);
+    }
+
+    /**Returns power of two number of slots holding the entries within the load factor*/
+    private int capacityFor(int count) {
+        long needed = (long) Math.ceil(count / (double) loadFactor) + 1;
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed) {
+            if (capacity == 1 << 30) {
+                throw new IllegalStateException("Map is too large: " + count);
+            }
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**Returns spread hash of the key or throws ClassCastException for keys of other types*/
+    @SuppressWarnings("unchecked")
+    private int hash(Object key) {
+        int h = hasher.applyAsInt((K) key);
+        return h ^ (h >>> 16);
+    }
+
+    /**Returns index of the live entry with the key, or -1*/
+    private int find(Object key) {
+        if (key == null) {
+            return -1;
+        }
+        int h;
+        try {
+            h = hash(key);
+        }
+        catch (ClassCastException e) {
+            return -1;
+        }
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == EMPTY) {
+                return -1;
+            }
+            int entry = slot - 1;
+            if (hashes[entry] == h && keys[entry] != null && keys[entry].equals(key)) {
+                return entry;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return live;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return live == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != -1;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (int i = 0; i < entries; i++) {
+            if (keys[i] != null && Objects.equals(values[i], value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int entry = find(key);
+        return entry == -1 ? null : (V) values[entry];
+    }
+
+    /**@throws IllegalArgumentException If the key is null*/
+    @Nullable
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Null keys are not supported");
+        }
+        int h = hash(key);
+        int i = h & mask;
+        for (; slots[i] != EMPTY; i = (i + 1) & mask) {
+            int entry = slots[i] - 1;
+            if (hashes[entry] == h && keys[entry] != null && keys[entry].equals(key)) {
+                V old = (V) values[entry];
+                values[entry] = value;
+                return old;
+            }
+        }
+
+        if (entries + 1 > loadFactor * slots.length) {
+            rehash(capacityFor(live + 1));
+            i = h & mask;
+            while (slots[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+        }
+        if (entries == keys.length) {
+            int length = Math.max(MIN_CAPACITY, keys.length * 2);
+            hashes = Arrays.copyOf(hashes, length);
+            keys = Arrays.copyOf(keys, length);
+            values = Arrays.copyOf(values, length);
+        }
+        hashes[entries] = h;
+        keys[entries] = key;
+        values[entries] = value;
+        slots[i] = ++entries;
+        live++;
+        modCount++;
+        return null;
+    }
+
+    @Nullable
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        int entry = find(key);
+        if (entry == -1) {
+            return null;
+        }
+        V old = (V) values[entry];
+        removeEntry(entry);
+        return old;
+    }
+
+    /**Leaves the slot pointing at the entry, so probing goes on past it*/
+    private void removeEntry(int entry) {
+        keys[entry] = null;
+        values[entry] = null;
+        live--;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(slots, EMPTY);
+        Arrays.fill(keys, 0, entries, null);
+        Arrays.fill(values, 0, entries, null);
+        entries = 0;
+        live = 0;
+        modCount++;
+    }
+
+    /**Moves live entries to the front and fills new slots, dropping tombstones*/
+    private void rehash(int capacity) {
+        int count = 0;
+        for (int i = 0; i < entries; i++) {
+            if (keys[i] != null) {
+                hashes[count] = hashes[i];
+                keys[count] = keys[i];
+                values[count] = values[i];
+                count++;
+            }
+        }
+        Arrays.fill(keys, count, entries, null);
+        Arrays.fill(values, count, entries, null);
+        entries = count;
+
+        slots = new int[capacity];
+        mask = capacity - 1;
+        for (int entry = 0; entry < entries; entry++) {
+            int i = hashes[entry] & mask;
+            while (slots[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = entry + 1;
+        }
+        modCount++;
+    }
+
+    /**Passes live entries to the action in insertion order without creating entries*/
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(@NotNull BiConsumer<? super K, ? super V> action) {
+        int expected = modCount;
+        for (int i = 0; i < entries; i++) {
+            if (keys[i] != null) {
+                action.accept((K) keys[i], (V) values[i]);
+            }
+            if (modCount != expected) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    @NotNull
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    /**Live view of entries in insertion order*/
+    private class EntrySet extends AbstractSet<Entry<K, V>> {
+        @Override
+        public int size() {
+            return live;
+        }
+
+        @Override
+        public void clear() {
+            OpenHashStorage.this.clear();
+        }
+
+        @NotNull
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new Iterator<Entry<K, V>>() {
+                private int next = skip(0);
+                private int last = -1;
+                private int expected = modCount;
+
+                private int skip(int i) {
+                    while (i < entries && keys[i] == null) {
+                        i++;
+                    }
+                    return i;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next < entries;
+                }
+
+                @Override
+                public Entry<K, V> next() {
+                    if (modCount != expected) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if (next >= entries) {
+                        throw new NoSuchElementException();
+                    }
+                    last = next;
+                    next = skip(next + 1);
+                    return new StorageEntry(last);
+                }
+
+                @Override
+                public void remove() {
+                    if (last == -1) {
+                        throw new IllegalStateException("No entry to remove");
+                    }
+                    if (modCount != expected) {
+                        throw new ConcurrentModificationException();
+                    }
+                    removeEntry(last);
+                    last = -1;
+                    expected = modCount;
+                }
+            };
+        }
+    }
+
+    /**Entry writing values through to the storage, finding its key again after the storage changed*/
+    private class StorageEntry implements Entry<K, V> {
+        private final K key;
+        //Index of the entry, valid while modCount equals expected
+        private int index;
+        private int expected;
+
+        @SuppressWarnings("unchecked")
+        StorageEntry(int index) {
+            this.index = index;
+            this.key = (K) keys[index];
+            this.expected = modCount;
+        }
+
+        /**Returns index of the entry with the key, or -1 if it was removed*/
+        private int index() {
+            if (expected != modCount) {
+                //Rehash moves entries, so the cached index may point at another key
+                index = find(key);
+                expected = modCount;
+            }
+            return index;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V getValue() {
+            int index = index();
+            return index == -1 ? null : (V) values[index];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V setValue(V value) {
+            int index = index();
+            if (index == -1) {
+                throw new IllegalStateException("Entry was removed");
+            }
+            V old = (V) values[index];
+            values[index] = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) return false;
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return key.equals(e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+}
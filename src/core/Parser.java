@@ -1,8 +1,10 @@
 package core;
 
+import lexis.TokenStream;
 import syntax.OperationResult;
 import syntax.PatternSearchException;
 
 public interface Parser {
     OperationResult process(String[] input) throws PatternSearchException;
+    OperationResult process(TokenStream input) throws PatternSearchException;
 }
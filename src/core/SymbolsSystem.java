@@ -1,29 +1,44 @@
 package core;
 
-import lexis.StringLexer;
-import lexis.SymbolPack;
-import lexis.UnmatchedSubstringException;
+import lexis.*;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.*;
 
 public class SymbolsSystem implements Lexer {
+    
+    /**Available lexical analyzer implementations*/
+    public enum LexerEngine {
+        /**Splits string by spaces after spacing out reserved symbols*/
+        STRING,
+        /**Single pass longest match over an automaton compiled from the symbol pack*/
+        DFA,
+        /**Automaton based lexer run in parallel over chunks of the input*/
+        PARALLEL,
+        /**Bulk scanning of ASCII words, numbers and whitespace, automaton for the rest*/
+        SCAN,
+        /**Matcher class generated from the symbol pack and compiled at runtime, needs a JDK*/
+        COMPILED
+    }
 
     private StringLexer lexer = new StringLexer(this);
+    private DfaLexer dfaLexer;
+    private ParallelLexer parallelLexer;
+    private ScanningLexer scanningLexer;
+    private CompiledLexer compiledLexer;
+    private LexerEngine engine = LexerEngine.STRING;
     protected SymbolPack symbols;
-    protected Map<String, Integer> idMap = new HashStorage<>(100, s -> {
-        int res = 1;
-        final int prime = 1049;
-        
-        for (char c : s.toCharArray()) {
-            res = res * prime + c;
-        }
-        
-        return res;
-    });
-    protected Map<Integer, IdData> idData = new HashStorage<>(100, i -> i);
+    protected IdentifierTable ids;
 
     public SymbolsSystem(SymbolPack symbolPack) {
+        this(symbolPack, new ColumnarIdentifierTable());
+    }
+
+    /**Creates a system using the given identifier table, which can be shared if it is thread safe*/
+    public SymbolsSystem(SymbolPack symbolPack, IdentifierTable identifiers) {
         this.symbols = symbolPack;
+        this.ids = identifiers;
     }
 
     /**Finds and returns a constant symbol from map*/
@@ -43,24 +58,29 @@ public class SymbolsSystem implements Lexer {
         return this.symbols.spacedSymbolSet();
     }
 
+    /**Checks whether the string is a constant symbol*/
+    public boolean isSymbol(String symbol) {
+        return this.symbols.contains(symbol);
+    }
+
+    /**Returns the longest spaced symbol starting at index or null*/
+    public String matchSpaced(CharSequence string, int index) {
+        return this.symbols.matchSpaced(string, index);
+    }
+
     /**Adds an identifier to map if it doesn't exist*/
     public boolean addIdentifier(String key) {
-        if (!idMap.containsKey(key)) {
-            IdData data = new IdData();
-            data.setKey(idMap.size());
-            data.setName(key);
-            
-            idMap.put(key, idMap.size());
-            idData.put(idMap.get(key), data);
-            return true;
-        }
-        return false;
+        return ids.add(key);
     }
     
 
     /**Finds and returns identifier from map*/
     public int getIdentifier(String key) {
-        return this.idMap.get(key);
+        int id = this.ids.find(key);
+        if (id == -1) {
+            throw new IllegalArgumentException("Identifier " + key + " does not exist");
+        }
+        return id;
     }
     
 
@@ -77,43 +97,146 @@ public class SymbolsSystem implements Lexer {
     /**Process the string using lexer*/
     @Override
     public String[] process(String input) throws UnmatchedSubstringException {
+        if (engine == LexerEngine.DFA) {
+            return getDfaLexer().processString(input);
+        }
+        if (engine == LexerEngine.SCAN) {
+            return getScanningLexer().processString(input);
+        }
+        if (engine == LexerEngine.COMPILED) {
+            return getCompiledLexer().processString(input);
+        }
+        if (engine == LexerEngine.PARALLEL && input != null) {
+            TokenStream out = newTokenStream();
+            getParallelLexer().processString(input, out);
+            return out.toStrings();
+        }
         return lexer.processString(input);
     }
     
+    /**Process the string using lexer, appending lexemes to the stream*/
+    @Override
+    public void process(String input, TokenStream out) throws UnmatchedSubstringException {
+        if (engine == LexerEngine.DFA) {
+            getDfaLexer().processString(input, out);
+        }
+        else if (engine == LexerEngine.PARALLEL) {
+            getParallelLexer().processString(input, out);
+        }
+        else if (engine == LexerEngine.SCAN) {
+            getScanningLexer().processString(input, out);
+        }
+        else if (engine == LexerEngine.COMPILED) {
+            getCompiledLexer().processString(input, out);
+        }
+        else {
+            lexer.processString(input, out);
+        }
+    }
+    
+    /**Lexes the whole input, passing lexemes to the consumer as soon as they are recognized*/
+    @Override
+    public void process(Reader input, TokenConsumer out) throws IOException, UnmatchedSubstringException {
+        newStreamLexer(input).lex(out);
+    }
+    
+    /**Lexes the text line by line, recording checkpoints for incremental lexing*/
+    public LineCheckpoints processLines(String text, TokenStream out) throws UnmatchedSubstringException {
+        return LineCheckpoints.process(this, text, out);
+    }
+    
+    /**Lexes again only lines touched by an edit of the text, splicing new lexemes into the stream*/
+    public void relex(String text, TokenStream tokens, LineCheckpoints lines, int start, int oldEnd, int newEnd) throws UnmatchedSubstringException {
+        lines.relex(this, text, tokens, start, oldEnd, newEnd);
+    }
+    
+    /**Creates a lexer reading from the input through a reusable buffer*/
+    public StreamLexer newStreamLexer(Reader input) {
+        return new StreamLexer(this, getDfaLexer().getAutomaton(), input);
+    }
+    
+    /**Creates a stream lexing the input on demand, as the parser advances*/
+    public StreamLexer.LazyTokenStream lazyTokenStream(Reader input) {
+        return new StreamLexer.LazyTokenStream(newStreamLexer(input));
+    }
+    
+    /**Creates an empty stream for lexemes of this system*/
+    public TokenStream newTokenStream() {
+        return new TokenStream(getIdentifierCode(), getLiteralCode());
+    }
+    
+    public LexerEngine getLexerEngine() {
+        return engine;
+    }
+    
+    public void setLexerEngine(LexerEngine engine) {
+        this.engine = engine;
+    }
+    
+    /**Returns automaton based lexer, compiling the symbol pack on first use*/
+    protected DfaLexer getDfaLexer() {
+        if (dfaLexer == null) {
+            dfaLexer = new DfaLexer(this, symbols);
+        }
+        return dfaLexer;
+    }
+    
+    /**Returns parallel lexer running on the common pool*/
+    protected ParallelLexer getParallelLexer() {
+        if (parallelLexer == null) {
+            parallelLexer = new ParallelLexer(this, getDfaLexer());
+        }
+        return parallelLexer;
+    }
+    
+    /**Returns lexer with bulk scanning fast path, sharing the automaton with the DFA lexer*/
+    protected ScanningLexer getScanningLexer() {
+        if (scanningLexer == null) {
+            scanningLexer = new ScanningLexer(this, symbols, getDfaLexer().getAutomaton());
+        }
+        return scanningLexer;
+    }
+    
+    /**Returns lexer running a matcher generated for the symbol pack, compiling it on first use*/
+    protected CompiledLexer getCompiledLexer() {
+        if (compiledLexer == null) {
+            compiledLexer = new CompiledLexer(this, symbols);
+        }
+        return compiledLexer;
+    }
+    
     /**Get data about all ids*/
     @Override
     public Map<String, IdData> getIdData() {
         Map<String, IdData> m = new HashMap<>();
-        for (String id : idMap.keySet()) {
-            if (id != null) {
-                m.put(id, idData.get(idMap.get(id)));
-            }
+        for (IdData data : getIdList()) {
+            m.put(data.getName(), data);
         }
         return m;
     }
     
+    /**Returns read only view of identifiers by index, no data is copied*/
     @Override
     public List<IdData> getIdList() {
-        List<IdData> list = new ArrayList<>();
-        
-        for (int i = 0; i < idData.size(); i++) {
-            list.add(idData.get(i));
-        }
-        
-        return list;
+        return ids.asList();
+    }
+    
+    /**Returns the identifier table, which may be shared with other systems*/
+    public IdentifierTable getIdentifierTable() {
+        return ids;
     }
     
     public void setTypeOfId(int id, String type) {
-        if (id < 0 || id > idData.size() - 1) {
+        if (id < 0 || id > ids.size() - 1) {
             throw new IllegalArgumentException("Id with index " + id + " does not exist");
         }
-        idData.get(id).setType(type);
+        ids.setType(id, type);
     }
     
     public String getTypeOfId(int id) {
-        if (id < 0 || id > idData.size() - 1) {
+        if (id < 0 || id > ids.size() - 1) {
             throw new IllegalArgumentException("Id with index " + id + " does not exist");
         }
-        return idData.get(id).getType();
+        return ids.getType(id);
     }
 }
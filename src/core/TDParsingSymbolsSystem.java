@@ -1,24 +1,166 @@
 package core;
 
+import lexis.StreamLexer;
 import lexis.SymbolPack;
-import syntax.OperationResult;
-import syntax.PatternSearchException;
-import syntax.SyntaxPack;
-import syntax.SyntaxSymbol;
+import lexis.TokenStream;
+import lexis.UnmatchedSubstringException;
+import syntax.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 /**Recursive parser*/
 public class TDParsingSymbolsSystem extends SymbolsSystem implements Parser {
+    
+    /**Memoization of symbol search results within a parse*/
+    public enum Memoization {
+        /**Symbols are searched again at every attempt*/
+        NONE,
+        /**Packrat parsing, every symbol is searched at most once at a position, keeping all results*/
+        ALL,
+        /**Only results of selected symbols are kept, bounding the memory*/
+        SELECTED
+    }
+    
+    /**Execution of syntax patterns*/
+    public enum ParserEngine {
+        /**Syntax symbols search their patterns directly, tracing every operation to the syntax log*/
+        PATTERNS,
+        /**Patterns are compiled once into a flat grammar program run by an interpreter*/
+        COMPILED,
+        /**The grammar program is compiled into Java source of a parser, which is compiled and loaded in the process*/
+        GENERATED
+    }
+    
     protected SyntaxPack syntax;
+    private ParserEngine parserEngine = ParserEngine.COMPILED;
+    private GrammarProgram program;
+    private GeneratedParser generatedParser;
+    private Memoization memoization = Memoization.NONE;
+    private Set<String> memoizedSymbols = Collections.emptySet();
+    private int errorLimit = 1;
     
     public TDParsingSymbolsSystem(SymbolPack symbolPack, SyntaxPack syntaxPack) {
-        super(symbolPack);
+        this(symbolPack, syntaxPack, new ColumnarIdentifierTable());
+    }
+    
+    public TDParsingSymbolsSystem(SymbolPack symbolPack, SyntaxPack syntaxPack, IdentifierTable identifiers) {
+        super(symbolPack, identifiers);
         syntax = syntaxPack;
         syntaxPack.setSystem(this);
     }
     
     @Override
     public OperationResult process(String[] input) throws PatternSearchException {
+        return process(TokenStream.fromStrings(input, getIdentifierCode(), getLiteralCode()));
+    }
+    
+    /**
+     * Parses the input with the selected engine
+     * @throws IllegalStateException If errors are recovered from and the engine is not COMPILED
+     */
+    @Override
+    public OperationResult process(TokenStream input) throws PatternSearchException {
+        if (errorLimit > 1) {
+            if (parserEngine != ParserEngine.COMPILED) {
+                throw new IllegalStateException("Parser engine " + parserEngine + " does not recover from errors, error limit " + errorLimit + " needs " + ParserEngine.COMPILED);
+            }
+            return getGrammarProgram().parse(input, newParseContext(), errorLimit);
+        }
+        if (parserEngine == ParserEngine.GENERATED) {
+            return getGeneratedParser().parse(input, newParseContext());
+        }
+        if (parserEngine == ParserEngine.COMPILED) {
+            return getGrammarProgram().parse(input, newParseContext());
+        }
         SyntaxSymbol mainSymbol = syntax.getSyntaxSymbol(syntax.getMainSymbol());
-        return mainSymbol.searchPatterns(input, 0);
+        return mainSymbol.searchPatterns(input, 0, newParseContext());
+    }
+    
+    /**
+     * Parses the input while lexing it on demand
+     * @throws UnmatchedSubstringException If lexing fails, reported instead of the syntax error it causes
+     */
+    public OperationResult process(Reader input) throws IOException, UnmatchedSubstringException, PatternSearchException {
+        StreamLexer.LazyTokenStream tokens = lazyTokenStream(input);
+        OperationResult result = process(tokens);
+        tokens.checkError();
+        return result;
+    }
+    
+    /**Returns the program compiled from the syntax pack, compiling it again if symbols were added*/
+    public GrammarProgram getGrammarProgram() {
+        if (program == null || program.getSymbolCount() != syntax.getSymbolCount()) {
+            program = GrammarProgram.compile(syntax);
+        }
+        return program;
+    }
+    
+    /**
+     * Returns the parser generated from the grammar program, generating it again if the program was compiled again
+     * @throws IllegalStateException If the Java compiler is not available
+     */
+    public GeneratedParser getGeneratedParser() {
+        if (generatedParser == null || generatedParser.getProgram() != getGrammarProgram()) {
+            generatedParser = new ParserGenerator(getGrammarProgram()).compile();
+        }
+        return generatedParser;
+    }
+    
+    /**Creates state for one parse according to the memoization mode*/
+    protected ParseContext newParseContext() {
+        switch (memoization) {
+            case ALL:
+                return ParseContext.memoizeAll(syntax);
+            case SELECTED:
+                return ParseContext.memoizeSelected(syntax, memoizedSymbols);
+            default:
+                return null;
+        }
+    }
+    
+    public ParserEngine getParserEngine() {
+        return parserEngine;
+    }
+    
+    public void setParserEngine(ParserEngine parserEngine) {
+        this.parserEngine = parserEngine;
+    }
+    
+    public Memoization getMemoization() {
+        return memoization;
+    }
+    
+    public void setMemoization(Memoization memoization) {
+        this.memoization = memoization;
+    }
+    
+    public int getErrorLimit() {
+        return errorLimit;
+    }
+    
+    /**
+     * Sets count of errors after which a parse stops, recovering from the errors before it at synchronization symbols of the syntax pack.
+     * Only the COMPILED engine recovers, parsing with other engines fails for limits above 1
+     * @throws IllegalArgumentException If the limit is not positive
+     */
+    public void setErrorLimit(int errorLimit) {
+        if (errorLimit < 1) {
+            throw new IllegalArgumentException("Error limit must be greater than 0: " + errorLimit);
+        }
+        this.errorLimit = errorLimit;
+    }
+    
+    /**Selects symbols memoized in SELECTED mode*/
+    public void setMemoizedSymbols(Set<String> names) {
+        for (String name : names) {
+            if (!syntax.hasSyntaxSymbol(name)) {
+                throw new IllegalArgumentException("Symbol \"" + name + "\" not found");
+            }
+        }
+        this.memoizedSymbols = new HashSet<>(names);
     }
 }
@@ -2,6 +2,7 @@ package generator;
 
 import core.Lexer;
 import lexis.SymbolPack;
+import syntax.SyntaxNode;
 import syntax.SyntaxPack;
 
 import java.util.HashMap;
@@ -23,10 +24,14 @@ public abstract class CodeGenerator {
         init();
     }
     
+    /**Generates code of the symbol by the function added for its name, concatenating code of items of lists*/
     protected String apply(SymbolData symbol) {
         if (symbol == null) {
             return "";
         }
+        if (symbol.isList()) {
+            return join(symbol, "");
+        }
         Function<SymbolData, String> func = functions.get(symbol.getName());
         if (func == null) {
             return symbol.getName();
@@ -34,6 +39,21 @@ public abstract class CodeGenerator {
         return func.apply(symbol);
     }
     
+    /**Generates code of items of the list separated by the separator, or code of the symbol if it is not a list*/
+    protected String join(SymbolData symbol, String separator) {
+        if (symbol == null || !symbol.isList()) {
+            return apply(symbol);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (SymbolData item : symbol.getItems()) {
+            if (sb.length() > 0) {
+                sb.append(separator);
+            }
+            sb.append(apply(item));
+        }
+        return sb.toString();
+    }
+    
     protected Function<SymbolData, String> add(String key, Function<SymbolData, String> function) {
         return functions.put(key, function);
     }
@@ -41,4 +61,9 @@ public abstract class CodeGenerator {
     protected abstract void init();
     
     public abstract String generate(SymbolData data);
+    
+    /**Generates code from the parse tree without reading its string form*/
+    public String generate(SyntaxNode tree) {
+        return generate(SymbolData.fromTree(tree));
+    }
 }
@@ -5,6 +5,7 @@ import core.Lexer;
 import lexis.SymbolPack;
 import syntax.SyntaxPack;
 
+import java.util.ArrayList;
 import java.util.List;
 
 
@@ -36,30 +37,22 @@ public class PascalToPL1 extends CodeGenerator {
         add("description section loop", sd -> {
             if (sd.get("list") == null) return "";
             sd.get("list").getSymbols().put("type", sd.get("type"));
-            return apply(sd.get("list")) + apply(sd.get("extra"));
+            return apply(sd.get("list"));
         });
         
         add("variable list", sd -> {
-            IdData idData = ids.get(symbols.extractIdentifier(sd.get("var").getName()));
-            if (sd.get("extra") != null) {
-                sd.get("extra").getSymbols().put("type", sd.get("type"));
+            List<String> names = new ArrayList<>();
+            names.add(ids.get(symbols.extractIdentifier(sd.get("var").getName())).getName().toUpperCase());
+            for (SymbolData item : sd.get("extra").getItems()) {
+                names.add(ids.get(symbols.extractIdentifier(item.get("var").getName())).getName().toUpperCase());
             }
             if (sd.get("type") != null) {
-                return "DECLARE " + idData.getName().toUpperCase() + " " + apply(sd.get("type")) + ";\r\n" + apply(sd.get("extra"));
+                String type = apply(sd.get("type"));
+                StringBuilder sb = new StringBuilder();
+                names.forEach(name -> sb.append("DECLARE ").append(name).append(" ").append(type).append(";\r\n"));
+                return sb.toString();
             }
-            return idData.getName().toUpperCase() + (sd.get("extra").get("var") == null ? "" : ", ") + apply(sd.get("extra"));
-        });
-        
-        add("variable list loop", sd -> {
-            if (sd.get("var") == null) return "";
-            IdData idData = ids.get(symbols.extractIdentifier(sd.get("var").getName()));
-            if (sd.get("extra") != null) {
-                sd.get("extra").getSymbols().put("type", sd.get("type"));
-            }
-            if (sd.get("type") != null) {
-                return "DECLARE " + idData.getName().toUpperCase() + " " + apply(sd.get("type")) + ";\r\n" + apply(sd.get("extra"));
-            }
-            return idData.getName().toUpperCase() + (sd.get("extra").get("var") == null ? "" : ", ") + apply(sd.get("extra"));
+            return String.join(", ", names);
         });
         
         add("variable type", sd -> {
@@ -93,7 +86,7 @@ public class PascalToPL1 extends CodeGenerator {
     
         add("operator list loop", sd -> {
             if (sd.get("op") == null) return "";
-            return apply(sd.get("op")) + ";\r\n" + apply(sd.get("extra"));
+            return apply(sd.get("op")) + ";\r\n";
         });
         
         add("operator", sd -> apply(sd.get("op")));
@@ -115,14 +108,15 @@ public class PascalToPL1 extends CodeGenerator {
             if (sd.get("extra") == null) {
                 return "^" + apply(sd.get("expr"));
             }
-            return apply(sd.get("expr")) + (apply(sd.get("extra")).length() == 0 ? "" : " " + apply(sd.get("extra")));
+            String extra = join(sd.get("extra"), " ");
+            return apply(sd.get("expr")) + (extra.length() == 0 ? "" : " " + extra);
         });
     
         add("expression loop", sd -> {
-            if (sd.get("extra") == null) {
+            if (sd.get("op") == null) {
                 return "";
             }
-            return apply(sd.get("op")) + " " + apply(sd.get("expr")) + (apply(sd.get("extra")).length() == 0 ? "" : " " + apply(sd.get("extra")));
+            return apply(sd.get("op")) + " " + apply(sd.get("expr"));
         });
         
         add("logic operator", sd -> {
@@ -140,14 +134,15 @@ public class PascalToPL1 extends CodeGenerator {
             if (sd.get("extra") == null) {
                 return "^" + apply(sd.get("expr"));
             }
-            return apply(sd.get("expr")) + (apply(sd.get("extra")).length() == 0 ? "" : " " + apply(sd.get("extra")));
+            String extra = join(sd.get("extra"), " ");
+            return apply(sd.get("expr")) + (extra.length() == 0 ? "" : " " + extra);
         });
     
         add("logic expression loop", sd -> {
-            if (sd.get("extra") == null) {
+            if (sd.get("op") == null) {
                 return "";
             }
-            return apply(sd.get("op")) + " " + apply(sd.get("expr")) + (apply(sd.get("extra")).length() == 0 ? "" : " " + apply(sd.get("extra")));
+            return apply(sd.get("op")) + " " + apply(sd.get("expr"));
         });
     
         add("comparison operator", sd -> {
@@ -173,48 +168,56 @@ public class PascalToPL1 extends CodeGenerator {
             return "";
         });
         
-        add("comparison", sd -> apply(sd.get("expr")) + (apply(sd.get("extra")).length() == 0 ? "" : " " + apply(sd.get("extra"))));
+        add("comparison", sd -> {
+            String extra = join(sd.get("extra"), " ");
+            return apply(sd.get("expr")) + (extra.length() == 0 ? "" : " " + extra);
+        });
         
         add("comparison loop plus", sd -> {
-            if (sd.get("extra") == null) {
+            if (sd.get("op") == null) {
                 return "";
             }
-            String op = symbols.find(Integer.parseInt(sd.get("op").getName()));;
-            return op + " " + apply(sd.get("expr")) + (apply(sd.get("extra")).length() == 0 ? "" : " " + apply(sd.get("extra")));
+            String op = symbols.find(Integer.parseInt(sd.get("op").getName()));
+            return op + " " + apply(sd.get("expr"));
         });
     
         add("comparison loop minus", sd -> {
             if (sd.get("extra") == null) {
                 return "";
             }
-            String op = symbols.find(Integer.parseInt(sd.get("op").getName()));;
-            return op + " " + apply(sd.get("expr")) + (apply(sd.get("extra")).length() == 0 ? "" : " " + apply(sd.get("extra")));
+            String op = symbols.find(Integer.parseInt(sd.get("op").getName()));
+            String extra = join(sd.get("extra"), " ");
+            return op + " " + apply(sd.get("expr")) + (extra.length() == 0 ? "" : " " + extra);
         });
         
-        add("addition", sd -> apply(sd.get("expr")) + (apply(sd.get("extra")).length() == 0 ? "" : " " + apply(sd.get("extra"))));
+        add("addition", sd -> {
+            String extra = join(sd.get("extra"), " ");
+            return apply(sd.get("expr")) + (extra.length() == 0 ? "" : " " + extra);
+        });
     
         add("addition loop multi", sd -> {
-            if (sd.get("extra") == null) {
+            if (sd.get("op") == null) {
                 return "";
             }
-            String op = symbols.find(Integer.parseInt(sd.get("op").getName()));;
-            return op + " " + apply(sd.get("expr")) + (apply(sd.get("extra")).length() == 0 ? "" : " " + apply(sd.get("extra")));
+            String op = symbols.find(Integer.parseInt(sd.get("op").getName()));
+            return op + " " + apply(sd.get("expr"));
         });
     
         add("addition loop div", sd -> {
             if (sd.get("extra") == null) {
                 return "";
             }
-            String op = symbols.find(Integer.parseInt(sd.get("op").getName()));;
-            return op + " " + apply(sd.get("expr")) + (apply(sd.get("extra")).length() == 0 ? "" : " " + apply(sd.get("extra")));
+            String op = symbols.find(Integer.parseInt(sd.get("op").getName()));
+            String extra = join(sd.get("extra"), " ");
+            return op + " " + apply(sd.get("expr")) + (extra.length() == 0 ? "" : " " + extra);
         });
     
         add("addition loop mod", sd -> {
             if (sd.get("extra") == null) {
                 return "";
             }
-            String op = symbols.find(Integer.parseInt(sd.get("op").getName()));
-            return "MOD(" + apply(sd.get("expr")) + (apply(sd.get("extra")).length() == 0 ? "" : ", " + apply(sd.get("extra"))) + ")";
+            String extra = join(sd.get("extra"), " ");
+            return "MOD(" + apply(sd.get("expr")) + (extra.length() == 0 ? "" : ", " + extra) + ")";
         });
         
         add("multiplication", sd -> {
@@ -1,6 +1,12 @@
 package generator;
 
+import syntax.SyntaxNode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -42,10 +48,51 @@ public class SymbolData {
         return symbols.get(key);
     }
     
+    /**Returns values of a list of a repeated operation in order, which are stored with keys 0, 1 and so on*/
+    public List<SymbolData> getItems() {
+        List<SymbolData> items = new ArrayList<>();
+        for (int i = 0; symbols.containsKey(Integer.toString(i)); i++) {
+            items.add(symbols.get(Integer.toString(i)));
+        }
+        return items;
+    }
+    
+    /**Checks whether the data is a list of a repeated operation, which has an empty name*/
+    public boolean isList() {
+        return name.isEmpty();
+    }
+    
     public static SymbolData readString(String dataString) {
         return getSymbol(dataString, 0).symbolData;
     }
     
+    /**
+     * Converts the parse tree into data as read from its string form, walking the tree without recursion.
+     * Nodes shared by the tree are converted into separate data, as generators modify it
+     */
+    public static SymbolData fromTree(SyntaxNode tree) {
+        SymbolData root = new SymbolData(tree.getName());
+        Deque<SyntaxNode> nodes = new ArrayDeque<>();
+        Deque<SymbolData> data = new ArrayDeque<>();
+        nodes.push(tree);
+        data.push(root);
+        while (!nodes.isEmpty()) {
+            SyntaxNode node = nodes.pop();
+            SymbolData sd = data.pop();
+            for (int i = 0; i < node.size(); i++) {
+                SyntaxNode child = node.getChild(i);
+                SymbolData childData = new SymbolData(child.getName());
+                //Variables are named without the leading $
+                sd.symbols.put(node.getSlot(i).substring(1), childData);
+                if (child.size() > 0) {
+                    nodes.push(child);
+                    data.push(childData);
+                }
+            }
+        }
+        return root;
+    }
+    
     /*@Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
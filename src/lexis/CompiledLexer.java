@@ -0,0 +1,92 @@
+package lexis;
+
+import core.SymbolsSystem;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Lexical analyzer running a matcher class generated for its symbol pack.
+ * Generation and compilation happen once, the result is the same as with DfaLexer
+ */
+public class CompiledLexer {
+    private final SymbolsSystem dic;
+    private final TokenMatcher matcher;
+    private final IdentifierCache identifiers;
+    private char[] buffer = new char[256];
+
+    /**
+     * @throws IllegalArgumentException If the pack can not be generated
+     * @throws IllegalStateException If the running platform has no Java compiler
+     */
+    public CompiledLexer(@NotNull SymbolsSystem dictionary, @NotNull SymbolPack pack) {
+        this(dictionary, new LexerGenerator(pack).compile());
+    }
+
+    public CompiledLexer(@NotNull SymbolsSystem dictionary, @NotNull TokenMatcher matcher) {
+        this.dic = dictionary;
+        this.matcher = matcher;
+        this.identifiers = new IdentifierCache(dictionary);
+    }
+
+    /**Processes input string into lexemes*/
+    @Nullable
+    @Contract("null -> null")
+    public String[] processString(String inString) throws UnmatchedSubstringException {
+        if (inString == null) {
+            return null;
+        }
+        TokenStream out = new TokenStream(dic.getIdentifierCode(), dic.getLiteralCode());
+        processString(inString, out);
+        return out.toStrings();
+    }
+
+    /**Processes input string, appending lexemes to the stream*/
+    public void processString(@NotNull String inString, @NotNull TokenStream out) throws UnmatchedSubstringException {
+        int length = inString.length();
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+        }
+        char[] chars = buffer;
+        inString.getChars(0, length, chars, 0);
+
+        int identifierCode = dic.getIdentifierCode();
+        int literalCode = dic.getLiteralCode();
+        int i = 0;
+        int lineStart = 0;
+        while (i < length) {
+            char c = chars[i];
+            if (LexerAutomaton.isWhitespace(c)) {
+                if (c == '\n') {
+                    out.setLine(out.getLine() + 1);
+                    lineStart = i + 1;
+                }
+                i++;
+                continue;
+            }
+
+            long match = matcher.match(chars, i, length);
+            if (match == TokenMatcher.NO_MATCH) {
+                int end = i;
+                while (end < length && !LexerAutomaton.isWhitespace(chars[end])) {
+                    end++;
+                }
+                throw new UnmatchedSubstringException(new String(chars, i, end - i));
+            }
+
+            int code = TokenMatcher.code(match);
+            int end = TokenMatcher.end(match);
+            long position = out.position(i - lineStart, end - i);
+            if (code == identifierCode) {
+                out.addIdentifier(identifiers.intern(chars, i, end), position);
+            }
+            else if (code == literalCode) {
+                out.addLiteral(new String(chars, i, end - i), position);
+            }
+            else {
+                out.addSymbol(code, position);
+            }
+            i = end;
+        }
+    }
+}
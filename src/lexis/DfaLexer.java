@@ -0,0 +1,101 @@
+package lexis;
+
+import core.SymbolsSystem;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.ToIntFunction;
+
+/**Lexical analyzer driven by an automaton, processes a string in a single pass using longest match*/
+public class DfaLexer {
+    private final SymbolsSystem dic;
+    private final LexerAutomaton automaton;
+
+    public DfaLexer(SymbolsSystem dictionary, SymbolPack pack) {
+        this.dic = dictionary;
+        this.automaton = new LexerAutomaton(pack);
+    }
+
+    /**Processes input string into lexemes*/
+    @Nullable
+    @Contract("null -> null")
+    public String[] processString(String inString) throws UnmatchedSubstringException {
+        if (inString == null) {
+            return null;
+        }
+        TokenStream out = new TokenStream(dic.getIdentifierCode(), dic.getLiteralCode());
+        processString(inString, out);
+        return out.toStrings();
+    }
+
+    /**Processes input string, appending lexemes to the stream*/
+    public void processString(@NotNull String inString, @NotNull TokenStream out) throws UnmatchedSubstringException {
+        processRange(inString, 0, inString.length(), out, name -> {
+            dic.addIdentifier(name);
+            return dic.getIdentifier(name);
+        });
+    }
+
+    /**Processes part of the string, identifier indexes are taken from the given function*/
+    void processRange(@NotNull String inString, int from, int to, @NotNull TokenStream out, @NotNull ToIntFunction<String> identifiers) throws UnmatchedSubstringException {
+        int i = from;
+        int lineStart = from;
+
+        while (i < to) {
+            char c = inString.charAt(i);
+            if (LexerAutomaton.isWhitespace(c)) {
+                if (c == '\n') {
+                    out.setLine(out.getLine() + 1);
+                    lineStart = i + 1;
+                }
+                i++;
+                continue;
+            }
+
+            //Runs automaton, remembering last accepting position
+            int state = automaton.start();
+            int matchEnd = -1;
+            int matchCode = LexerAutomaton.NO_ACCEPT;
+            for (int j = i; j < to; j++) {
+                state = automaton.next(state, inString.charAt(j));
+                if (state == LexerAutomaton.DEAD) {
+                    break;
+                }
+                if (automaton.accept(state) != LexerAutomaton.NO_ACCEPT) {
+                    matchEnd = j + 1;
+                    matchCode = automaton.accept(state);
+                }
+            }
+
+            if (matchEnd == -1) {
+                throw new UnmatchedSubstringException(unmatched(inString, i, to));
+            }
+
+            long position = out.position(i - lineStart, matchEnd - i);
+            if (matchCode == dic.getIdentifierCode()) {
+                out.addIdentifier(identifiers.applyAsInt(inString.substring(i, matchEnd)), position);
+            }
+            else if (matchCode == dic.getLiteralCode()) {
+                out.addLiteral(inString.substring(i, matchEnd), position);
+            }
+            else {
+                out.addSymbol(matchCode, position);
+            }
+            i = matchEnd;
+        }
+    }
+
+    @NotNull
+    private static String unmatched(@NotNull String inString, int start, int to) {
+        int end = start;
+        while (end < to && !LexerAutomaton.isWhitespace(inString.charAt(end))) {
+            end++;
+        }
+        return inString.substring(start, end);
+    }
+
+    public LexerAutomaton getAutomaton() {
+        return automaton;
+    }
+}
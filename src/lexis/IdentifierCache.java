@@ -0,0 +1,40 @@
+package lexis;
+
+import core.SymbolsSystem;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Small direct mapped cache of recently seen identifiers by hash.
+ * Lets repeated names skip string creation and identifier table lookups
+ */
+class IdentifierCache {
+    private static final int SIZE = 512;
+
+    private final SymbolsSystem dic;
+    private final String[] names = new String[SIZE];
+    private final int[] ids = new int[SIZE];
+
+    IdentifierCache(@NotNull SymbolsSystem dictionary) {
+        this.dic = dictionary;
+    }
+
+    /**Returns index of the identifier held in the char range, adding it to the dictionary if needed*/
+    int intern(char[] chars, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (SIZE - 1);
+        String cached = names[slot];
+        if (cached != null && ScanningLexer.regionEquals(cached, chars, from, to)) {
+            return ids[slot];
+        }
+
+        String name = new String(chars, from, to - from);
+        dic.addIdentifier(name);
+        int id = dic.getIdentifier(name);
+        names[slot] = name;
+        ids[slot] = id;
+        return id;
+    }
+}
@@ -0,0 +1,224 @@
+package lexis;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Deterministic finite automaton compiled from a symbol pack.
+ * Recognizes reserved symbols, identifiers, numeric and quoted literals,
+ * accepting states hold the code of the recognized lexeme
+ */
+public class LexerAutomaton {
+    /**Character class of every char outside of ASCII range*/
+    static final int OTHER = 128;
+    static final int ALPHABET = OTHER + 1;
+
+    public static final int DEAD = -1;
+    public static final int NO_ACCEPT = -1;
+
+    //Lower value wins when several lexemes end in one state
+    private static final int PRIORITY_SYMBOL = 0;
+    private static final int PRIORITY_LITERAL = 1;
+    private static final int PRIORITY_IDENTIFIER = 2;
+
+    private final int[] next;
+    private final int[] accept;
+
+    public LexerAutomaton(@NotNull SymbolPack pack) {
+        Nfa nfa = new Nfa();
+
+        for (String symbol : pack.symbolSet()) {
+            nfa.addWord(symbol, pack.find(symbol), PRIORITY_SYMBOL);
+        }
+        nfa.addWord("true", pack.getLiteralCode(), PRIORITY_LITERAL);
+        nfa.addWord("false", pack.getLiteralCode(), PRIORITY_LITERAL);
+        nfa.addIdentifier(pack.getIdentifierCode());
+        nfa.addNumber(pack.getLiteralCode());
+        nfa.addQuoted('\'', pack.getLiteralCode());
+        nfa.addQuoted('\"', pack.getLiteralCode());
+
+        //Subset construction
+        List<int[]> transitions = new ArrayList<>();
+        List<Integer> accepting = new ArrayList<>();
+        Map<Set<Integer>, Integer> states = new HashMap<>();
+        Deque<Set<Integer>> queue = new ArrayDeque<>();
+
+        Set<Integer> start = Collections.singleton(0);
+        states.put(start, 0);
+        queue.add(start);
+        transitions.add(null);
+        accepting.add(NO_ACCEPT);
+
+        while (!queue.isEmpty()) {
+            Set<Integer> set = queue.poll();
+            int index = states.get(set);
+            int[] row = new int[ALPHABET];
+
+            for (int c = 0; c < ALPHABET; c++) {
+                Set<Integer> target = new TreeSet<>();
+                for (int s : set) {
+                    target.addAll(nfa.move(s, c));
+                }
+                if (target.isEmpty()) {
+                    row[c] = DEAD;
+                    continue;
+                }
+                Integer t = states.get(target);
+                if (t == null) {
+                    t = transitions.size();
+                    states.put(target, t);
+                    queue.add(target);
+                    transitions.add(null);
+                    accepting.add(nfa.accept(target));
+                }
+                row[c] = t;
+            }
+            transitions.set(index, row);
+        }
+
+        next = new int[transitions.size() * ALPHABET];
+        accept = new int[transitions.size()];
+        for (int i = 0; i < transitions.size(); i++) {
+            System.arraycopy(transitions.get(i), 0, next, i * ALPHABET, ALPHABET);
+            accept[i] = accepting.get(i);
+        }
+    }
+
+    @Contract(pure = true)
+    static int charClass(char c) {
+        return c < OTHER ? c : OTHER;
+    }
+
+    @Contract(pure = true)
+    public int start() {
+        return 0;
+    }
+
+    /**Returns state reached from the state by the char, or DEAD*/
+    @Contract(pure = true)
+    public int next(int state, char c) {
+        return next[state * ALPHABET + charClass(c)];
+    }
+
+    /**Returns code of the lexeme accepted in the state, or NO_ACCEPT*/
+    @Contract(pure = true)
+    public int accept(int state) {
+        return accept[state];
+    }
+
+    public int getStateCount() {
+        return accept.length;
+    }
+
+    @Contract(pure = true)
+    public static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '\f';
+    }
+
+    @Contract(pure = true)
+    static boolean isIdentifierStart(int c) {
+        return c == '_' || c == OTHER || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    @Contract(pure = true)
+    static boolean isIdentifierPart(int c) {
+        return isIdentifierStart(c) || (c >= '0' && c <= '9');
+    }
+
+    /**Nondeterministic automaton used as a source for subset construction*/
+    private static class Nfa {
+        private final List<Map<Integer, Set<Integer>>> edges = new ArrayList<>();
+        private final List<Integer> codes = new ArrayList<>();
+        private final List<Integer> priorities = new ArrayList<>();
+
+        Nfa() {
+            state();
+        }
+
+        private int state() {
+            edges.add(new HashMap<>());
+            codes.add(NO_ACCEPT);
+            priorities.add(Integer.MAX_VALUE);
+            return edges.size() - 1;
+        }
+
+        private void edge(int from, int c, int to) {
+            edges.get(from).computeIfAbsent(c, k -> new HashSet<>()).add(to);
+        }
+
+        private void setAccept(int state, int code, int priority) {
+            codes.set(state, code);
+            priorities.set(state, priority);
+        }
+
+        Set<Integer> move(int state, int c) {
+            Set<Integer> res = edges.get(state).get(c);
+            return res == null ? Collections.emptySet() : res;
+        }
+
+        int accept(Set<Integer> set) {
+            int code = NO_ACCEPT;
+            int priority = Integer.MAX_VALUE;
+            for (int s : set) {
+                if (codes.get(s) != NO_ACCEPT && priorities.get(s) < priority) {
+                    code = codes.get(s);
+                    priority = priorities.get(s);
+                }
+            }
+            return code;
+        }
+
+        void addWord(String word, int code, int priority) {
+            int state = 0;
+            for (int i = 0; i < word.length(); i++) {
+                int s = state();
+                edge(state, charClass(word.charAt(i)), s);
+                state = s;
+            }
+            setAccept(state, code, priority);
+        }
+
+        void addIdentifier(int code) {
+            int body = state();
+            for (int c = 0; c < ALPHABET; c++) {
+                if (isIdentifierStart(c)) {
+                    edge(0, c, body);
+                }
+                if (isIdentifierPart(c)) {
+                    edge(body, c, body);
+                }
+            }
+            setAccept(body, code, PRIORITY_IDENTIFIER);
+        }
+
+        void addNumber(int code) {
+            int whole = state();
+            int point = state();
+            int fraction = state();
+            for (int c = '0'; c <= '9'; c++) {
+                edge(0, c, whole);
+                edge(whole, c, whole);
+                edge(point, c, fraction);
+                edge(fraction, c, fraction);
+            }
+            edge(whole, '.', point);
+            setAccept(whole, code, PRIORITY_LITERAL);
+            setAccept(fraction, code, PRIORITY_LITERAL);
+        }
+
+        void addQuoted(char quote, int code) {
+            int body = state();
+            int end = state();
+            edge(0, quote, body);
+            for (int c = 0; c < ALPHABET; c++) {
+                if (c != quote && c != '\n' && c != '\r') {
+                    edge(body, c, body);
+                }
+            }
+            edge(body, quote, end);
+            setAccept(end, code, PRIORITY_LITERAL);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package lexis;
+
+import core.InMemoryCompiler;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Generates a token matcher specialized for a symbol pack.
+ * Reserved words and operators are recognized by nested switches on chars,
+ * so the compiled class has no tables and can be inlined by the JIT.
+ * Recognizes the same lexemes as LexerAutomaton
+ */
+public class LexerGenerator {
+    public static final String PACKAGE = "lexis.generated";
+
+    //Compiled matchers by their source, packs are usually fixed for the life of the process
+    private static final Map<String, Class<?>> compiled = new ConcurrentHashMap<>();
+
+    private final SymbolPack pack;
+    private final String className;
+    //Words starting with a letter, including boolean literals, grouped by length
+    private final SortedMap<Integer, SortedMap<String, Integer>> words = new TreeMap<>();
+    private final SortedMap<String, Integer> operators = new TreeMap<>();
+    private final StringBuilder out = new StringBuilder();
+
+    /**
+     * @throws IllegalArgumentException If the pack has symbols the generated matcher can not recognize:
+     * not ASCII, starting with a digit, a quote or whitespace, or words with chars outside of identifiers
+     */
+    public LexerGenerator(@NotNull SymbolPack pack) {
+        this.pack = pack;
+        this.className = pack.getClass().getSimpleName() + "Matcher";
+
+        for (String symbol : pack.symbolSet()) {
+            if (symbol.isEmpty()) {
+                continue;
+            }
+            for (int i = 0; i < symbol.length(); i++) {
+                if (symbol.charAt(i) >= LexerAutomaton.OTHER) {
+                    throw new IllegalArgumentException("Symbol is not ASCII: " + symbol);
+                }
+            }
+            char first = symbol.charAt(0);
+            if ((first >= '0' && first <= '9') || first == '\'' || first == '\"' || LexerAutomaton.isWhitespace(first)) {
+                throw new IllegalArgumentException("Symbol can not be generated: " + symbol);
+            }
+            if (LexerAutomaton.isIdentifierStart(first)) {
+                for (int i = 1; i < symbol.length(); i++) {
+                    if (!LexerAutomaton.isIdentifierPart(symbol.charAt(i))) {
+                        throw new IllegalArgumentException("Word symbol has non identifier chars: " + symbol);
+                    }
+                }
+                addWord(symbol, pack.find(symbol));
+            }
+            else {
+                operators.put(symbol, pack.find(symbol));
+            }
+        }
+        //Reserved symbols take precedence over boolean literals
+        addWord("true", pack.getLiteralCode());
+        addWord("false", pack.getLiteralCode());
+    }
+
+    private void addWord(@NotNull String word, int code) {
+        words.computeIfAbsent(word.length(), k -> new TreeMap<>()).putIfAbsent(word, code);
+    }
+
+    @NotNull
+    public String getClassName() {
+        return PACKAGE + "." + className;
+    }
+
+    /**Returns Java source of the matcher class*/
+    @NotNull
+    public String generate() {
+        out.setLength(0);
+        line(0, "package " + PACKAGE + ";");
+        line(0, "");
+        line(0, "import lexis.TokenMatcher;");
+        line(0, "");
+        line(0, "/**Generated from " + pack.getClass().getName() + "*/");
+        line(0, "public final class " + className + " implements TokenMatcher {");
+        generateMatch();
+        generateWord();
+        generateNumber();
+        generateQuoted();
+        line(0, "}");
+        return out.toString();
+    }
+
+    /**Generates and compiles the matcher, reusing a class compiled earlier from the same source*/
+    @NotNull
+    public TokenMatcher compile() {
+        String source = generate();
+        Class<?> type = compiled.computeIfAbsent(source,
+                s -> InMemoryCompiler.compile(getClassName(), s, TokenMatcher.class.getClassLoader()));
+        try {
+            return (TokenMatcher) type.getConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can not instantiate " + getClassName(), e);
+        }
+    }
+
+    private void generateMatch() {
+        line(1, "@Override");
+        line(1, "public long match(char[] chars, int from, int to) {");
+        line(2, "char c = chars[from];");
+        line(2, "if (c >= 128) {");
+        line(3, "return word(chars, from, to);");
+        line(2, "}");
+        line(2, "switch (c) {");
+        StringBuilder letters = new StringBuilder();
+        for (char c = 0; c < LexerAutomaton.OTHER; c++) {
+            if (LexerAutomaton.isIdentifierStart(c)) {
+                letters.append("case ").append(literal(c)).append(": ");
+            }
+        }
+        line(3, letters.toString().trim());
+        line(4, "return word(chars, from, to);");
+        line(3, "case '0': case '1': case '2': case '3': case '4': case '5': case '6': case '7': case '8': case '9':");
+        line(4, "return number(chars, from, to);");
+        line(3, "case '\\'': case '\"':");
+        line(4, "return quoted(chars, from, to);");
+        generateOperators("", 3);
+        line(2, "}");
+        line(2, "return NO_MATCH;");
+        line(1, "}");
+    }
+
+    /**Generates cases for operators continuing the prefix, each case returns the longest match*/
+    private void generateOperators(@NotNull String prefix, int indent) {
+        int depth = prefix.length();
+        Set<Character> next = new TreeSet<>();
+        for (String operator : operators.subMap(prefix + Character.MIN_VALUE, prefix + Character.MAX_VALUE).keySet()) {
+            next.add(operator.charAt(depth));
+        }
+        for (char c : next) {
+            String node = prefix + c;
+            boolean children = operators.subMap(node + Character.MIN_VALUE, node + Character.MAX_VALUE).size() > 0;
+            Integer code = operators.get(node);
+            line(indent, "case " + literal(c) + ":");
+            if (!children) {
+                line(indent + 1, "return TokenMatcher.match(" + code + ", from + " + node.length() + ");");
+                continue;
+            }
+            if (depth == 0) {
+                line(indent + 1, "{");
+                indent++;
+                line(indent + 1, "long best = " + (code == null ? "NO_MATCH" : "TokenMatcher.match(" + code + ", from + 1)") + ";");
+            }
+            else if (code != null) {
+                line(indent + 1, "best = TokenMatcher.match(" + code + ", from + " + node.length() + ");");
+            }
+            line(indent + 1, "if (from + " + node.length() + " < to) {");
+            line(indent + 2, "switch (chars[from + " + node.length() + "]) {");
+            generateOperators(node, indent + 3);
+            line(indent + 2, "}");
+            line(indent + 1, "}");
+            line(indent + 1, "return best;");
+            if (depth == 0) {
+                indent--;
+                line(indent + 1, "}");
+            }
+        }
+    }
+
+    private void generateWord() {
+        line(0, "");
+        line(1, "private static long word(char[] chars, int from, int to) {");
+        line(2, "int end = from + 1;");
+        line(2, "while (end < to) {");
+        line(3, "char c = chars[end];");
+        line(3, "if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c >= 128) {");
+        line(4, "end++;");
+        line(3, "}");
+        line(3, "else {");
+        line(4, "break;");
+        line(3, "}");
+        line(2, "}");
+        line(2, "switch (end - from) {");
+        for (Map.Entry<Integer, SortedMap<String, Integer>> entry : words.entrySet()) {
+            line(3, "case " + entry.getKey() + ":");
+            line(4, "switch (chars[from]) {");
+            generateWords(entry.getValue(), "", 5);
+            line(4, "}");
+            line(4, "break;");
+        }
+        line(2, "}");
+        line(2, "return TokenMatcher.match(" + pack.getIdentifierCode() + ", end);");
+        line(1, "}");
+    }
+
+    /**Generates cases for words of one length continuing the prefix, unmatched cases break out*/
+    private void generateWords(@NotNull SortedMap<String, Integer> group, @NotNull String prefix, int indent) {
+        int depth = prefix.length();
+        Set<Character> next = new TreeSet<>();
+        for (String word : group.subMap(prefix + Character.MIN_VALUE, prefix + Character.MAX_VALUE).keySet()) {
+            next.add(word.charAt(depth));
+        }
+        for (char c : next) {
+            String node = prefix + c;
+            line(indent, "case " + literal(c) + ":");
+            Integer code = group.get(node);
+            if (code != null) {
+                line(indent + 1, "return TokenMatcher.match(" + code + ", end);");
+                continue;
+            }
+            line(indent + 1, "switch (chars[from + " + node.length() + "]) {");
+            generateWords(group, node, indent + 2);
+            line(indent + 1, "}");
+            line(indent + 1, "break;");
+        }
+    }
+
+    private void generateNumber() {
+        line(0, "");
+        line(1, "private static long number(char[] chars, int from, int to) {");
+        line(2, "int end = digits(chars, from + 1, to);");
+        line(2, "if (end + 1 < to && chars[end] == '.' && chars[end + 1] >= '0' && chars[end + 1] <= '9') {");
+        line(3, "end = digits(chars, end + 2, to);");
+        line(2, "}");
+        line(2, "return TokenMatcher.match(" + pack.getLiteralCode() + ", end);");
+        line(1, "}");
+        line(0, "");
+        line(1, "private static int digits(char[] chars, int from, int to) {");
+        line(2, "while (from < to && chars[from] >= '0' && chars[from] <= '9') {");
+        line(3, "from++;");
+        line(2, "}");
+        line(2, "return from;");
+        line(1, "}");
+    }
+
+    private void generateQuoted() {
+        line(0, "");
+        line(1, "private static long quoted(char[] chars, int from, int to) {");
+        line(2, "char quote = chars[from];");
+        line(2, "for (int i = from + 1; i < to; i++) {");
+        line(3, "char c = chars[i];");
+        line(3, "if (c == quote) {");
+        line(4, "return TokenMatcher.match(" + pack.getLiteralCode() + ", i + 1);");
+        line(3, "}");
+        line(3, "if (c == '\\n' || c == '\\r') {");
+        line(4, "break;");
+        line(3, "}");
+        line(2, "}");
+        line(2, "return NO_MATCH;");
+        line(1, "}");
+    }
+
+    private void line(int indent, @NotNull String text) {
+        for (int i = 0; i < indent; i++) {
+            out.append("    ");
+        }
+        out.append(text).append('\n');
+    }
+
+    /**Returns Java char literal*/
+    @NotNull
+    @Contract(pure = true)
+    private static String literal(char c) {
+        switch (c) {
+            case '\'':
+                return "'\\''";
+            case '\\':
+                return "'\\\\'";
+            case '\n':
+                return "'\\n'";
+            case '\r':
+                return "'\\r'";
+            case '\t':
+                return "'\\t'";
+            case '\f':
+                return "'\\f'";
+            default:
+                return c >= ' ' && c < 127 ? "'" + c + "'" : String.format("'\\u%04x'", (int) c);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package lexis;
+
+import core.Lexer;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Lexer checkpoints at line starts of a source: offset of the line and index of its first lexeme.
+ * No lexeme spans a line break, so the lexer is in its start state at every line
+ * and a line can be lexed again on its own after an edit
+ */
+public class LineCheckpoints {
+    private int[] offsets = new int[64];
+    private int[] tokens = new int[64];
+    private int lines = 0;
+
+    /**Lexes the whole text line by line, appending lexemes to the empty stream*/
+    @NotNull
+    public static LineCheckpoints process(@NotNull Lexer lexer, @NotNull String text, @NotNull TokenStream out) throws UnmatchedSubstringException {
+        LineCheckpoints checkpoints = new LineCheckpoints();
+        checkpoints.lexLines(lexer, text, 0, text.length(), 0, out);
+        return checkpoints;
+    }
+
+    /**
+     * Lexes again lines touched by an edit and splices their lexemes into the stream.
+     * Identifiers keep their codes, new names are added to the lexer's table.
+     * If the edited lines can not be lexed, the stream and checkpoints stay unchanged
+     * @param text Text after the edit
+     * @param start Start of the edited range
+     * @param oldEnd End of the replaced range in the text before the edit
+     * @param newEnd End of the inserted text in the text after the edit
+     */
+    public void relex(@NotNull Lexer lexer, @NotNull String text, @NotNull TokenStream stream, int start, int oldEnd, int newEnd) throws UnmatchedSubstringException {
+        if (start < 0 || oldEnd < start || newEnd < start || newEnd > text.length()) {
+            throw new IllegalArgumentException("Invalid edit range: " + start + ", " + oldEnd + ", " + newEnd);
+        }
+        int first = lineOf(start);
+        int last = lineOf(oldEnd);
+
+        //Text after the edit is unchanged, so the last touched line ends at the next line break
+        int regionStart = offsets[first];
+        int regionEnd = text.indexOf('\n', newEnd);
+        if (regionEnd == -1) {
+            regionEnd = text.length();
+        }
+
+        LineCheckpoints region = new LineCheckpoints();
+        TokenStream lexemes = new TokenStream(stream.getIdentifierCode(), stream.getLiteralCode());
+        region.lexLines(lexer, text, regionStart, regionEnd, first, lexemes);
+
+        int tokenFrom = tokens[first];
+        int tokenTo = last + 1 < lines ? tokens[last + 1] : stream.size();
+        int removed = last - first + 1;
+        stream.replace(tokenFrom, tokenTo, lexemes);
+        stream.shiftLines(tokenFrom + lexemes.size(), region.lines - removed);
+
+        int charDelta = newEnd - oldEnd;
+        int tokenDelta = lexemes.size() - (tokenTo - tokenFrom);
+        int newLines = lines - removed + region.lines;
+        int[] newOffsets = offsets.length >= newLines ? offsets : Arrays.copyOf(offsets, newLines * 2);
+        int[] newTokens = tokens.length >= newLines ? tokens : Arrays.copyOf(tokens, newLines * 2);
+        System.arraycopy(offsets, last + 1, newOffsets, first + region.lines, lines - last - 1);
+        System.arraycopy(tokens, last + 1, newTokens, first + region.lines, lines - last - 1);
+        for (int i = 0; i < region.lines; i++) {
+            newOffsets[first + i] = region.offsets[i];
+            newTokens[first + i] = region.tokens[i] + tokenFrom;
+        }
+        for (int i = first + region.lines; i < newLines; i++) {
+            newOffsets[i] += charDelta;
+            newTokens[i] += tokenDelta;
+        }
+        offsets = newOffsets;
+        tokens = newTokens;
+        lines = newLines;
+    }
+
+    /**Lexes lines of the text in range, adding a checkpoint for each*/
+    private void lexLines(@NotNull Lexer lexer, @NotNull String text, int from, int to, int firstLine, @NotNull TokenStream out) throws UnmatchedSubstringException {
+        int pos = from;
+        while (true) {
+            int end = text.indexOf('\n', pos);
+            if (end == -1 || end > to) {
+                end = to;
+            }
+            out.setLine(firstLine + lines);
+            add(pos, out.size());
+            lexer.process(text.substring(pos, end), out);
+            if (end == to) {
+                break;
+            }
+            pos = end + 1;
+        }
+    }
+
+    private void add(int offset, int token) {
+        if (lines == offsets.length) {
+            offsets = Arrays.copyOf(offsets, lines * 2);
+            tokens = Arrays.copyOf(tokens, lines * 2);
+        }
+        offsets[lines] = offset;
+        tokens[lines] = token;
+        lines++;
+    }
+
+    /**Returns index of the line containing the offset*/
+    @Contract(pure = true)
+    public int lineOf(int offset) {
+        int index = Arrays.binarySearch(offsets, 0, lines, offset);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    @Contract(pure = true)
+    public int getLineCount() {
+        return lines;
+    }
+
+    /**Returns offset of the line start in the text*/
+    @Contract(pure = true)
+    public int getLineOffset(int line) {
+        return offsets[line];
+    }
+
+    /**Returns index of the first lexeme of the line*/
+    @Contract(pure = true)
+    public int getLineToken(int line) {
+        return tokens[line];
+    }
+}
@@ -0,0 +1,154 @@
+package lexis;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader over a memory mapped file, decoding UTF-8 straight from the mapping.
+ * ASCII bytes are copied directly, other bytes go through a decoder.
+ * Files are mapped in windows, so sources larger than 2 GB are supported
+ */
+public class MappedSourceReader extends Reader {
+    public static final long DEFAULT_WINDOW_SIZE = 256L * 1024 * 1024;
+    //Window has to fit the longest UTF-8 sequence
+    public static final long MIN_WINDOW_SIZE = 4;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long windowSize;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private MappedByteBuffer window;
+    private long windowStart = 0;
+    //Holds second half of a surrogate pair which did not fit into the caller's buffer
+    private final CharBuffer spare = CharBuffer.allocate(2);
+    private boolean finished = false;
+
+    public MappedSourceReader(@NotNull Path path, long windowSize) throws IOException {
+        if (windowSize < MIN_WINDOW_SIZE || windowSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Window size must be in range " + MIN_WINDOW_SIZE + ".." + Integer.MAX_VALUE + ": " + windowSize);
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+        this.spare.flip();
+        map(0);
+    }
+
+    public MappedSourceReader(@NotNull Path path) throws IOException {
+        this(path, DEFAULT_WINDOW_SIZE);
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, fileSize - start));
+    }
+
+    private boolean isLastWindow() {
+        return windowStart + window.limit() >= fileSize;
+    }
+
+    /**@throws IOException If the reader is closed or the file can not be mapped*/
+    @Override
+    public int read(@NotNull char[] cbuf, int off, int len) throws IOException {
+        if (window == null) {
+            throw new IOException("Reader is closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        int count = 0;
+
+        while (count < len && spare.hasRemaining()) {
+            cbuf[off + count++] = spare.get();
+        }
+
+        while (count < len) {
+            if (!window.hasRemaining()) {
+                if (isLastWindow()) {
+                    break;
+                }
+                map(windowStart + window.position());
+                continue;
+            }
+
+            //ASCII fast path
+            int p = window.position();
+            int l = window.limit();
+            while (count < len && p < l) {
+                byte b = window.get(p);
+                if (b < 0) {
+                    break;
+                }
+                cbuf[off + count++] = (char) b;
+                p++;
+            }
+            window.position(p);
+            if (count == len || p == l) {
+                continue;
+            }
+
+            //Decodes characters outside of ASCII
+            boolean last = isLastWindow();
+            CoderResult res;
+            if (len - count >= 2) {
+                CharBuffer out = CharBuffer.wrap(cbuf, off + count, len - count);
+                res = decoder.decode(window, out, last);
+                count = out.position() - off;
+            }
+            else {
+                spare.clear();
+                res = decoder.decode(window, spare, last);
+                spare.flip();
+                while (count < len && spare.hasRemaining()) {
+                    cbuf[off + count++] = spare.get();
+                }
+            }
+
+            if (res.isUnderflow() && window.hasRemaining()) {
+                //Character is split between windows, maps the next one starting at it
+                if (last) {
+                    break;
+                }
+                map(windowStart + window.position());
+            }
+        }
+
+        if (count == 0) {
+            if (!finished) {
+                finished = true;
+                CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+                decoder.decode(window, out, true);
+                decoder.flush(out);
+                count = out.position() - off;
+            }
+            return count == 0 ? -1 : count;
+        }
+        return count;
+    }
+
+    /**Returns size of the source in bytes*/
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**Closes the file and drops the mapped window, so it can be unmapped once collected*/
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
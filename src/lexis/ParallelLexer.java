@@ -0,0 +1,156 @@
+package lexis;
+
+import core.SymbolsSystem;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Lexical analyzer splitting the input into chunks at line breaks and lexing them in parallel.
+ * Chunks number identifiers locally, the merge renumbers them in order of first occurrence,
+ * so the result is identical to a sequential run
+ */
+public class ParallelLexer {
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 64 * 1024;
+
+    private final SymbolsSystem dic;
+    private final DfaLexer lexer;
+    private final ForkJoinPool pool;
+    private final int minChunkSize;
+
+    public ParallelLexer(@NotNull SymbolsSystem dictionary, @NotNull DfaLexer lexer, @NotNull ForkJoinPool pool, int minChunkSize) {
+        if (minChunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be greater than 0: " + minChunkSize);
+        }
+        this.dic = dictionary;
+        this.lexer = lexer;
+        this.pool = pool;
+        this.minChunkSize = minChunkSize;
+    }
+
+    public ParallelLexer(@NotNull SymbolsSystem dictionary, @NotNull DfaLexer lexer) {
+        this(dictionary, lexer, ForkJoinPool.commonPool(), DEFAULT_MIN_CHUNK_SIZE);
+    }
+
+    /**Processes input string, appending lexemes to the stream*/
+    public void processString(@NotNull String inString, @NotNull TokenStream out) throws UnmatchedSubstringException {
+        int[] bounds = split(inString);
+
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<>(bounds.length - 1);
+        for (int i = 0; i < bounds.length - 1; i++) {
+            int from = bounds[i];
+            int to = bounds[i + 1];
+            tasks.add(pool.submit(() -> lexChunk(inString, from, to)));
+        }
+
+        //Merges in source order, stopping at the first chunk which failed
+        for (ForkJoinTask<Chunk> task : tasks) {
+            Chunk chunk = task.join();
+            merge(chunk, out);
+            //Chunks count lines from 0, the stream continues after the merged ones
+            out.setLine(out.getLine() + chunk.tokens.getLine());
+            if (chunk.error != null) {
+                for (ForkJoinTask<Chunk> rest : tasks) {
+                    rest.cancel(false);
+                }
+                throw chunk.error;
+            }
+        }
+    }
+
+    /**Splits the string into chunks ending after a line break, returns chunk borders*/
+    @NotNull
+    private int[] split(@NotNull String inString) {
+        int length = inString.length();
+        int count = Math.max(1, Math.min(pool.getParallelism() * 4, length / minChunkSize));
+        int size = length / count + 1;
+
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(0);
+        int pos = 0;
+        while (pos < length) {
+            int end = Math.min(length, pos + size);
+            //Quoted literals can not span lines, so a line break always separates lexemes
+            while (end < length && inString.charAt(end - 1) != '\n') {
+                end++;
+            }
+            bounds.add(end);
+            pos = end;
+        }
+        if (bounds.size() == 1) {
+            bounds.add(0);
+        }
+
+        int[] out = new int[bounds.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = bounds.get(i);
+        }
+        return out;
+    }
+
+    @NotNull
+    private Chunk lexChunk(@NotNull String inString, int from, int to) {
+        Chunk chunk = new Chunk(new TokenStream(dic.getIdentifierCode(), dic.getLiteralCode()));
+        try {
+            lexer.processRange(inString, from, to, chunk.tokens, chunk::intern);
+        }
+        catch (UnmatchedSubstringException e) {
+            chunk.error = e;
+        }
+        return chunk;
+    }
+
+    /**Adds chunk identifiers to the dictionary and appends its lexemes with global identifier indexes and lines*/
+    private void merge(@NotNull Chunk chunk, @NotNull TokenStream out) {
+        int[] global = new int[chunk.names.size()];
+        for (int i = 0; i < global.length; i++) {
+            String name = chunk.names.get(i);
+            dic.addIdentifier(name);
+            global[i] = dic.getIdentifier(name);
+        }
+
+        TokenStream tokens = chunk.tokens;
+        int line = out.getLine();
+        for (int i = 0; i < tokens.size(); i++) {
+            long position = TokenStream.movePosition(tokens.position(i), line);
+            if (tokens.isIdentifier(i)) {
+                out.addIdentifier(global[tokens.payload(i)], position);
+            }
+            else if (tokens.isLiteral(i)) {
+                out.addLiteral(tokens.literal(i), position);
+            }
+            else {
+                out.addSymbol(tokens.kind(i), position);
+            }
+        }
+    }
+
+    /**Lexemes of one chunk with chunk-local identifier table*/
+    private static class Chunk {
+        final TokenStream tokens;
+        final Map<String, Integer> ids = new HashMap<>();
+        final List<String> names = new ArrayList<>();
+        @Nullable
+        UnmatchedSubstringException error = null;
+
+        Chunk(TokenStream tokens) {
+            this.tokens = tokens;
+        }
+
+        int intern(String name) {
+            Integer id = ids.get(name);
+            if (id == null) {
+                id = names.size();
+                ids.put(name, id);
+                names.add(name);
+            }
+            return id;
+        }
+    }
+}
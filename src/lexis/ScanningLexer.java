@@ -0,0 +1,218 @@
+package lexis;
+
+import core.SymbolsSystem;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Lexical analyzer with a table driven fast path for ASCII input.
+ * Whitespace, words and numbers are skipped in bulk using a class table,
+ * words are then looked up in the symbol pack. Operators, quotes and non-ASCII input
+ * are left to the automaton, so the result is the same as with DfaLexer
+ */
+public class ScanningLexer {
+    private static final byte WHITESPACE = 1;
+    private static final byte DIGIT = 2;
+    private static final byte LETTER = 4;
+    private static final byte WORD = DIGIT | LETTER;
+
+    //Class flags of ASCII chars
+    private static final byte[] CLASSES = new byte[128];
+
+    static {
+        for (char c = 0; c < 128; c++) {
+            if (LexerAutomaton.isWhitespace(c)) {
+                CLASSES[c] |= WHITESPACE;
+            }
+            if (c >= '0' && c <= '9') {
+                CLASSES[c] |= DIGIT;
+            }
+            if (LexerAutomaton.isIdentifierStart(c)) {
+                CLASSES[c] |= LETTER;
+            }
+        }
+    }
+
+    private final SymbolsSystem dic;
+    private final SymbolPack pack;
+    private final LexerAutomaton automaton;
+    //Fast paths are off when some reserved symbol can not be told apart by a bulk scan
+    private final boolean wordFastPath;
+    private final boolean numberFastPath;
+    private char[] buffer = new char[256];
+    private final IdentifierCache identifiers;
+
+    public ScanningLexer(@NotNull SymbolsSystem dictionary, @NotNull SymbolPack pack, @NotNull LexerAutomaton automaton) {
+        this.dic = dictionary;
+        this.pack = pack;
+        this.automaton = automaton;
+        this.identifiers = new IdentifierCache(dictionary);
+
+        boolean words = true;
+        boolean numbers = true;
+        for (String symbol : pack.symbolSet()) {
+            if (symbol.isEmpty()) {
+                continue;
+            }
+            char first = symbol.charAt(0);
+            if (first < 128 && (CLASSES[first] & DIGIT) != 0) {
+                numbers = false;
+            }
+            if (first < 128 && (CLASSES[first] & LETTER) != 0) {
+                for (int i = 1; i < symbol.length(); i++) {
+                    char c = symbol.charAt(i);
+                    if (c >= 128 || (CLASSES[c] & WORD) == 0) {
+                        words = false;
+                    }
+                }
+            }
+        }
+        this.wordFastPath = words;
+        this.numberFastPath = numbers;
+    }
+
+    /**Processes input string into lexemes*/
+    @Nullable
+    @Contract("null -> null")
+    public String[] processString(String inString) throws UnmatchedSubstringException {
+        if (inString == null) {
+            return null;
+        }
+        TokenStream out = new TokenStream(dic.getIdentifierCode(), dic.getLiteralCode());
+        processString(inString, out);
+        return out.toStrings();
+    }
+
+    /**Processes input string, appending lexemes to the stream*/
+    public void processString(@NotNull String inString, @NotNull TokenStream out) throws UnmatchedSubstringException {
+        int length = inString.length();
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+        }
+        char[] chars = buffer;
+        inString.getChars(0, length, chars, 0);
+
+        int i = 0;
+        int lineStart = 0;
+        while (i < length) {
+            char c = chars[i];
+            int flags = c < 128 ? CLASSES[c] : 0;
+
+            if ((flags & WHITESPACE) != 0) {
+                do {
+                    if (chars[i] == '\n') {
+                        out.setLine(out.getLine() + 1);
+                        lineStart = i + 1;
+                    }
+                    i++;
+                } while (i < length && chars[i] < 128 && (CLASSES[chars[i]] & WHITESPACE) != 0);
+                continue;
+            }
+
+            if ((flags & LETTER) != 0 && wordFastPath) {
+                int end = i + 1;
+                while (end < length && chars[end] < 128 && (CLASSES[chars[end]] & WORD) != 0) {
+                    end++;
+                }
+                //Non-ASCII chars continue identifiers, such words go to the automaton
+                if (end == length || chars[end] < 128) {
+                    word(chars, i, end, out.position(i - lineStart, end - i), out);
+                    i = end;
+                    continue;
+                }
+            }
+
+            if ((flags & DIGIT) != 0 && numberFastPath) {
+                int end = skipDigits(chars, i + 1, length);
+                if (end + 1 < length && chars[end] == '.' && chars[end + 1] >= '0' && chars[end + 1] <= '9') {
+                    end = skipDigits(chars, end + 2, length);
+                }
+                out.addLiteral(new String(chars, i, end - i), out.position(i - lineStart, end - i));
+                i = end;
+                continue;
+            }
+
+            i = automatonStep(chars, i, length, lineStart, out);
+        }
+    }
+
+    @Contract(pure = true)
+    private static int skipDigits(char[] chars, int from, int length) {
+        while (from < length && chars[from] >= '0' && chars[from] <= '9') {
+            from++;
+        }
+        return from;
+    }
+
+    /**Classifies a whole word as a reserved symbol, a boolean literal or an identifier*/
+    private void word(char[] chars, int from, int to, long position, @NotNull TokenStream out) {
+        int code = pack.find(chars, from, to);
+        if (code != -1) {
+            out.addSymbol(code, position);
+            return;
+        }
+        if (isBoolean(chars, from, to)) {
+            out.addLiteral(new String(chars, from, to - from), position);
+            return;
+        }
+        out.addIdentifier(identifiers.intern(chars, from, to), position);
+    }
+
+    @Contract(pure = true)
+    static boolean isBoolean(char[] chars, int from, int to) {
+        return regionEquals("true", chars, from, to) || regionEquals("false", chars, from, to);
+    }
+
+    @Contract(pure = true)
+    static boolean regionEquals(String string, char[] chars, int from, int to) {
+        if (string.length() != to - from) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (string.charAt(i - from) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**Recognizes one lexeme with the automaton, returns its end*/
+    private int automatonStep(char[] chars, int i, int length, int lineStart, @NotNull TokenStream out) throws UnmatchedSubstringException {
+        int state = automaton.start();
+        int matchEnd = -1;
+        int matchCode = LexerAutomaton.NO_ACCEPT;
+        for (int j = i; j < length; j++) {
+            state = automaton.next(state, chars[j]);
+            if (state == LexerAutomaton.DEAD) {
+                break;
+            }
+            if (automaton.accept(state) != LexerAutomaton.NO_ACCEPT) {
+                matchEnd = j + 1;
+                matchCode = automaton.accept(state);
+            }
+        }
+
+        if (matchEnd == -1) {
+            int end = i;
+            while (end < length && !LexerAutomaton.isWhitespace(chars[end])) {
+                end++;
+            }
+            throw new UnmatchedSubstringException(new String(chars, i, end - i));
+        }
+
+        long position = out.position(i - lineStart, matchEnd - i);
+        if (matchCode == dic.getIdentifierCode()) {
+            String name = new String(chars, i, matchEnd - i);
+            dic.addIdentifier(name);
+            out.addIdentifier(dic.getIdentifier(name), position);
+        }
+        else if (matchCode == dic.getLiteralCode()) {
+            out.addLiteral(new String(chars, i, matchEnd - i), position);
+        }
+        else {
+            out.addSymbol(matchCode, position);
+        }
+        return matchEnd;
+    }
+}
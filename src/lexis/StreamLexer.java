@@ -0,0 +1,277 @@
+package lexis;
+
+import core.SymbolsSystem;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Lexical analyzer pulling characters from a reader through a reusable buffer.
+ * Lexemes are delivered one by one as soon as they are recognized,
+ * so memory use does not depend on the size of the source
+ */
+public class StreamLexer {
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final SymbolsSystem dic;
+    private final LexerAutomaton automaton;
+    private final Reader reader;
+
+    private char[] buffer;
+    private int pos = 0;
+    private int limit = 0;
+    private boolean eof = false;
+    //Offset of the buffer start in the source
+    private long consumed = 0;
+    private int line = 0;
+    private long lineStart = 0;
+
+    //Last recognized lexeme
+    private int kind = TokenStream.EOF;
+    private int payload = -1;
+    private String text = null;
+    private long position = TokenStream.NO_POSITION;
+
+    public StreamLexer(@NotNull SymbolsSystem dictionary, @NotNull LexerAutomaton automaton, @NotNull Reader reader, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be greater than 0: " + bufferSize);
+        }
+        this.dic = dictionary;
+        this.automaton = automaton;
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+    }
+
+    public StreamLexer(@NotNull SymbolsSystem dictionary, @NotNull LexerAutomaton automaton, @NotNull Reader reader) {
+        this(dictionary, automaton, reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    public StreamLexer(@NotNull SymbolsSystem dictionary, @NotNull LexerAutomaton automaton, @NotNull ReadableByteChannel channel, @NotNull Charset charset) {
+        this(dictionary, automaton, Channels.newReader(channel, charset.newDecoder(), -1));
+    }
+
+    /**
+     * Recognizes next lexeme
+     * @return False if the end of input is reached
+     */
+    public boolean next() throws IOException, UnmatchedSubstringException {
+        //Skips whitespace
+        while (true) {
+            if (pos == limit) {
+                compact();
+                if (!read()) {
+                    kind = TokenStream.EOF;
+                    payload = -1;
+                    text = null;
+                    position = TokenStream.NO_POSITION;
+                    return false;
+                }
+            }
+            if (!LexerAutomaton.isWhitespace(buffer[pos])) {
+                break;
+            }
+            if (buffer[pos] == '\n') {
+                line++;
+                lineStart = consumed + pos + 1;
+            }
+            pos++;
+        }
+
+        //Runs automaton, remembering last accepting position
+        int state = automaton.start();
+        int j = pos;
+        int matchEnd = -1;
+        int matchCode = LexerAutomaton.NO_ACCEPT;
+        while (true) {
+            if (j == limit) {
+                //Lexeme continues past the buffer, moves it to the front and reads more
+                int shift = compact();
+                j -= shift;
+                if (matchEnd != -1) {
+                    matchEnd -= shift;
+                }
+                if (!read()) {
+                    break;
+                }
+            }
+            state = automaton.next(state, buffer[j]);
+            if (state == LexerAutomaton.DEAD) {
+                break;
+            }
+            j++;
+            if (automaton.accept(state) != LexerAutomaton.NO_ACCEPT) {
+                matchEnd = j;
+                matchCode = automaton.accept(state);
+            }
+        }
+
+        if (matchEnd == -1) {
+            int end = pos;
+            while (end < limit && !LexerAutomaton.isWhitespace(buffer[end])) {
+                end++;
+            }
+            throw new UnmatchedSubstringException(new String(buffer, pos, end - pos));
+        }
+
+        kind = matchCode;
+        position = TokenStream.packPosition(line, (int) Math.min(consumed + pos - lineStart, Integer.MAX_VALUE), matchEnd - pos);
+        if (matchCode == dic.getIdentifierCode()) {
+            text = new String(buffer, pos, matchEnd - pos);
+            dic.addIdentifier(text);
+            payload = dic.getIdentifier(text);
+        }
+        else if (matchCode == dic.getLiteralCode()) {
+            text = new String(buffer, pos, matchEnd - pos);
+            payload = -1;
+        }
+        else {
+            text = null;
+            payload = -1;
+        }
+        pos = matchEnd;
+        return true;
+    }
+
+    /**Passes all remaining lexemes to the consumer*/
+    public void lex(@NotNull TokenConsumer consumer) throws IOException, UnmatchedSubstringException {
+        while (next()) {
+            consumer.accept(kind, payload, text, position);
+        }
+    }
+
+    /**Moves unprocessed characters to the front of the buffer, returns the shift*/
+    private int compact() {
+        int shift = pos;
+        if (shift > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= shift;
+            pos = 0;
+            consumed += shift;
+        }
+        return shift;
+    }
+
+    /**Reads more characters after the limit, growing the buffer if it is full*/
+    private boolean read() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int n;
+        do {
+            n = reader.read(buffer, limit, buffer.length - limit);
+        } while (n == 0);
+        if (n == -1) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    @Contract(pure = true)
+    public int getKind() {
+        return kind;
+    }
+
+    @Contract(pure = true)
+    public int getPayload() {
+        return payload;
+    }
+
+    @Nullable
+    @Contract(pure = true)
+    public String getText() {
+        return text;
+    }
+
+    /**Returns position of the last lexeme packed by TokenStream.packPosition*/
+    @Contract(pure = true)
+    public long getPosition() {
+        return position;
+    }
+
+    /**Returns line of the lexer in the source, starting from 0*/
+    @Contract(pure = true)
+    public int getLine() {
+        return line;
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Stream which lexes input only as far as the parser has looked,
+     * so parsing can start before lexing finishes.
+     * Lexing errors end the stream like its end would, so parsers must call checkError after parsing
+     * to report them instead of the syntax error at the end of the stream
+     */
+    public static class LazyTokenStream extends TokenStream {
+        private final StreamLexer lexer;
+        private Exception error = null;
+        private boolean finished = false;
+
+        public LazyTokenStream(@NotNull StreamLexer lexer) {
+            super(lexer.dic.getIdentifierCode(), lexer.dic.getLiteralCode());
+            this.lexer = lexer;
+        }
+
+        @Override
+        protected boolean fill(int index) {
+            while (!finished && size() <= index) {
+                try {
+                    if (lexer.next()) {
+                        accept(lexer.getKind(), lexer.getPayload(), lexer.getText(), lexer.getPosition());
+                    }
+                    else {
+                        finished = true;
+                    }
+                }
+                catch (IOException | UnmatchedSubstringException e) {
+                    error = e;
+                    finished = true;
+                }
+            }
+            return size() > index;
+        }
+
+        /**Lexes the rest of the input*/
+        public void fillAll() {
+            fill(Integer.MAX_VALUE - 1);
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Nullable
+        public Exception getError() {
+            return error;
+        }
+
+        /**
+         * Lexes the rest of the input and throws the lexing error, if any
+         * @throws IOException If the input could not be read
+         * @throws UnmatchedSubstringException If the input contains a substring matching no symbol
+         */
+        public void checkError() throws IOException, UnmatchedSubstringException {
+            fillAll();
+            if (error instanceof IOException) {
+                throw (IOException) error;
+            }
+            if (error instanceof UnmatchedSubstringException) {
+                throw (UnmatchedSubstringException) error;
+            }
+        }
+    }
+}
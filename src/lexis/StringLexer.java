@@ -5,9 +5,6 @@ import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import static java.lang.Character.isDigit;
 
 /**Lexical analyzer*/
@@ -25,8 +22,17 @@ public class StringLexer {
         if (inString == null) {
             return null;
         }
-        List<String> out = new ArrayList<>();
+        TokenStream out = new TokenStream(dic.getIdentifierCode(), dic.getLiteralCode());
+        processString(inString, out);
+        return out.toStrings();
+    }
+
+    /**Processes input string, appending lexemes to the stream*/
+    public void processString(@NotNull String inString, @NotNull TokenStream out) throws UnmatchedSubstringException {
         String[] substrings;
+        String original = inString;
+        //Position in the original string, spaces are only inserted so substrings keep their order
+        int column = 0;
 
         //Adds spaces around special symbols
         inString = addSpaces(inString);
@@ -38,26 +44,27 @@ public class StringLexer {
             if (substring.length() == 0) {
                 continue;
             }
+            column = original.indexOf(substring, column);
+            long position = out.position(column, substring.length());
+            column += substring.length();
             //Checks if the string is a reserved symbol
             if (this.isSymbol(substring)) {
-                out.add(Integer.toString(dic.getSymbol(substring)));
+                out.addSymbol(dic.getSymbol(substring), position);
             }
             //Checks if the string is an identifier
              else if (this.isIdentifier(substring)) {
                 this.dic.addIdentifier(substring);
-                out.add(dic.getIdentifierCode() + "." + dic.getIdentifier(substring));
+                out.addIdentifier(dic.getIdentifier(substring), position);
             }
             //Checks if the string is a literal
             else if (this.isLiteral(substring)) {
-                out.add(dic.getLiteralCode() + "." + substring);
+                out.addLiteral(substring, position);
             }
             //Otherwise, throws exception
             else {
                 throw new UnmatchedSubstringException(substring);
             }
         }
-
-        return out.toArray(new String[0]);
     }
 
     /**Adds spaces around reserved symbols*/
@@ -66,14 +73,7 @@ public class StringLexer {
         StringBuilder outString = new StringBuilder();
 
         for (int i = 0; i < inString.length(); ++i) {
-            String matched = null;
-            for (String symbol : this.dic.spacedSymbolSet()) {
-                if (inString.startsWith(symbol, i)) {
-                    if (matched == null || matched.length() < symbol.length()) {
-                        matched = symbol;
-                    }
-                }
-            }
+            String matched = this.dic.matchSpaced(inString, i);
             if (matched != null) {
                 if (i > 0 && inString.charAt(i - 1) != ' ') {
                     outString.append(" ");
@@ -96,12 +96,7 @@ public class StringLexer {
     }
 
     private boolean isSymbol(@NotNull String string) {
-        for (String symbol : this.dic.symbolSet()) {
-            if (string.equals(symbol)) {
-                return true;
-            }
-        }
-        return false;
+        return this.dic.isSymbol(string);
     }
 
     private boolean isIdentifier(@NotNull String string) {
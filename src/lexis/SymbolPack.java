@@ -4,33 +4,34 @@ import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 public abstract class SymbolPack {
 
     public SymbolPack() {
         initSymbols();
+        this.frozen = new Frozen(this);
     }
 
     private final Map<String, Integer> symbolsMap = new HashMap<>();
     private final Map<String, Integer> spacedSymbolsMap = new HashMap<>();
     private int identifierCode;
     private int literalCode;
+    //Immutable lookup structures built after initialization, null while symbols are being added
+    private final Frozen frozen;
 
     protected void add(String symbol) {
-        this.symbolsMap.put(symbol, this.getSymbolCount());
+        this.add(symbol, this.getSymbolCount());
     }
     protected void add(String symbol, int index) {
+        checkNotFrozen();
         this.symbolsMap.put(symbol, index);
     }
     protected void addSpaced(String symbol) {
-        int index = this.getSymbolCount();
-        this.spacedSymbolsMap.put(symbol, index);
-        this.add(symbol, index);
+        this.addSpaced(symbol, this.getSymbolCount());
     }
     protected void addSpaced(String symbol, int index) {
+        checkNotFrozen();
         this.spacedSymbolsMap.put(symbol, index);
         this.add(symbol, index);
     }
@@ -39,29 +40,56 @@ public abstract class SymbolPack {
     protected abstract void initSymbols();
 
     protected final void setIdentifierCode(int in) {
+        checkNotFrozen();
         this.identifierCode = in;
     }
     protected final void setLiteralCode(int in) {
+        checkNotFrozen();
         this.literalCode = in;
     }
 
+    private void checkNotFrozen() {
+        if (frozen != null) {
+            throw new IllegalStateException("Symbol pack can only be changed in initSymbols");
+        }
+    }
+
     protected int getSymbolCount() {
         return this.symbolsMap.size();
     }
 
     @Contract(pure = true)
     public final int getIdentifierCode() {
-        return this.identifierCode;
+        return frozen != null ? frozen.identifierCode : this.identifierCode;
     }
     @Contract(pure = true)
     public final int getLiteralCode() {
-        return this.literalCode;
+        return frozen != null ? frozen.literalCode : this.literalCode;
     }
 
     public final int find(String symbol) {
-        return this.symbolsMap.get(symbol);
+        int code = frozen.indexOf(symbol);
+        if (code == -1) {
+            throw new IllegalArgumentException("Symbol \"" + symbol + "\" not found");
+        }
+        return code;
     }
-    
+
+    /**Checks whether the string is a reserved symbol*/
+    @Contract(pure = true)
+    public final boolean contains(String symbol) {
+        return frozen.indexOf(symbol) != -1;
+    }
+
+    /**
+     * Finds code of the symbol held in the char range without creating a string
+     * @return Code or -1 if the range is not a reserved symbol
+     */
+    @Contract(pure = true)
+    public final int find(@NotNull char[] chars, int from, int to) {
+        return frozen.indexOf(chars, from, to);
+    }
+
     /**Extracts integer value of string containing identifier*/
     public int extractIdentifier(String input) {
         if (!input.startsWith(getIdentifierCode() + ".")) {
@@ -69,7 +97,7 @@ public abstract class SymbolPack {
         }
         return Integer.parseInt(input.substring(Integer.toString(getIdentifierCode()).length() + 1));
     }
-    
+
     /**Extracts integer value of string containing literal*/
     public int extractLiteral(String input) {
         if (!input.startsWith(getLiteralCode() + ".")) {
@@ -77,32 +105,207 @@ public abstract class SymbolPack {
         }
         return Integer.parseInt(input.substring(Integer.toString(getLiteralCode()).length() + 1));
     }
-    
+
     /**Finds original lexeme by it's code*/
     @Nullable
+    @Contract(pure = true)
     public final String find(int symbol) {
-        if (symbol == identifierCode) {
-            return "identifier";
-        }
-        if (symbol == literalCode) {
-            return "literal";
+        if (symbol < 0 || symbol >= frozen.lexemes.length) {
+            return null;
         }
-        for (Map.Entry<String, Integer> pair : symbolsMap.entrySet()) {
-            if (pair.getValue() == symbol) {
-                return pair.getKey();
+        return frozen.lexemes[symbol];
+    }
+
+    /**
+     * Finds the longest spaced symbol starting at index
+     * @return Matched symbol or null if there is none
+     */
+    @Nullable
+    @Contract(pure = true)
+    public final String matchSpaced(@NotNull CharSequence string, int index) {
+        char c = string.charAt(index);
+        String[] candidates = c < frozen.spacedByFirstChar.length ? frozen.spacedByFirstChar[c] : frozen.spacedOther;
+        for (String symbol : candidates) {
+            if (regionMatches(string, index, symbol)) {
+                return symbol;
             }
         }
         return null;
     }
 
+    @Contract(pure = true)
+    private static boolean regionMatches(CharSequence string, int index, String symbol) {
+        if (index + symbol.length() > string.length()) {
+            return false;
+        }
+        for (int i = 0; i < symbol.length(); i++) {
+            if (string.charAt(index + i) != symbol.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @NotNull
     @Contract(pure = true)
     public final Set<String> symbolSet() {
-        return this.symbolsMap.keySet();
+        return frozen.symbolSet;
     }
     @NotNull
     @Contract(pure = true)
     public final Set<String> spacedSymbolSet() {
-        return this.spacedSymbolsMap.keySet();
+        return frozen.spacedSymbolSet;
+    }
+
+    /**
+     * Lookup structures of a finished pack.
+     * All fields are final, so a pack can be shared between threads once constructed
+     */
+    private static class Frozen {
+        private static final int MAX_SEED = 1 << 12;
+        //Tables grow up to this many slots per symbol before freezing fails
+        private static final int MAX_LOAD_FACTOR_INVERSE = 64;
+
+        final int identifierCode;
+        final int literalCode;
+        final Set<String> symbolSet;
+        final Set<String> spacedSymbolSet;
+        //Lexemes indexed by code
+        final String[] lexemes;
+        //Perfect hash table of symbols
+        final String[] keys;
+        final int[] codes;
+        final int seed;
+        //Spaced symbols indexed by first char, longest first
+        final String[][] spacedByFirstChar;
+        final String[] spacedOther;
+
+        Frozen(SymbolPack pack) {
+            identifierCode = pack.identifierCode;
+            literalCode = pack.literalCode;
+            symbolSet = Collections.unmodifiableSet(new HashSet<>(pack.symbolsMap.keySet()));
+            spacedSymbolSet = Collections.unmodifiableSet(new HashSet<>(pack.spacedSymbolsMap.keySet()));
+
+            int max = Math.max(identifierCode, literalCode);
+            for (int code : pack.symbolsMap.values()) {
+                max = Math.max(max, code);
+            }
+            lexemes = new String[max + 1];
+            for (Map.Entry<String, Integer> pair : pack.symbolsMap.entrySet()) {
+                if (lexemes[pair.getValue()] == null) {
+                    lexemes[pair.getValue()] = pair.getKey();
+                }
+            }
+            if (literalCode >= 0) {
+                lexemes[literalCode] = "literal";
+            }
+            if (identifierCode >= 0) {
+                lexemes[identifierCode] = "identifier";
+            }
+
+            //Searches for a seed giving no collisions, growing the table if needed
+            int size = Integer.highestOneBit(Math.max(1, pack.symbolsMap.size()) * 2 - 1) << 1;
+            int maxSize = size * MAX_LOAD_FACTOR_INVERSE;
+            int found = -1;
+            String[] table = null;
+            while (found == -1) {
+                if (size > maxSize) {
+                    throw new IllegalStateException("Symbol pack of " + pack.symbolsMap.size() + " symbols can not be hashed without collisions");
+                }
+                for (int s = 0; s < MAX_SEED && found == -1; s++) {
+                    table = new String[size];
+                    boolean collision = false;
+                    for (String key : pack.symbolsMap.keySet()) {
+                        int slot = slot(key, s, size - 1);
+                        if (table[slot] != null) {
+                            collision = true;
+                            break;
+                        }
+                        table[slot] = key;
+                    }
+                    if (!collision) {
+                        found = s;
+                    }
+                }
+                if (found == -1) {
+                    size <<= 1;
+                }
+            }
+            keys = table;
+            seed = found;
+            codes = new int[size];
+            for (int i = 0; i < size; i++) {
+                codes[i] = keys[i] == null ? -1 : pack.symbolsMap.get(keys[i]);
+            }
+
+            List<List<String>> byChar = new ArrayList<>();
+            for (int i = 0; i < 128; i++) {
+                byChar.add(new ArrayList<>());
+            }
+            List<String> other = new ArrayList<>();
+            for (String symbol : spacedSymbolSet) {
+                if (symbol.isEmpty()) {
+                    continue;
+                }
+                char c = symbol.charAt(0);
+                (c < 128 ? byChar.get(c) : other).add(symbol);
+            }
+            Comparator<String> longestFirst = (a, b) -> b.length() - a.length();
+            spacedByFirstChar = new String[128][];
+            for (int i = 0; i < 128; i++) {
+                byChar.get(i).sort(longestFirst);
+                spacedByFirstChar[i] = byChar.get(i).toArray(new String[0]);
+            }
+            other.sort(longestFirst);
+            spacedOther = other.toArray(new String[0]);
+        }
+
+        /**Hashes chars of the key with the seed, so different seeds separate any two different keys*/
+        @Contract(pure = true)
+        static int slot(String key, int seed, int mask) {
+            int h = seed * 0x9E3779B1 + key.length();
+            for (int i = 0; i < key.length(); i++) {
+                h = (h ^ key.charAt(i)) * 0x01000193;
+            }
+            return mix(h) & mask;
+        }
+
+        @Contract(pure = true)
+        static int slot(char[] chars, int from, int to, int seed, int mask) {
+            int h = seed * 0x9E3779B1 + (to - from);
+            for (int i = from; i < to; i++) {
+                h = (h ^ chars[i]) * 0x01000193;
+            }
+            return mix(h) & mask;
+        }
+
+        @Contract(pure = true)
+        private static int mix(int h) {
+            h ^= h >>> 16;
+            h *= 0x85EBCA6B;
+            return h ^ (h >>> 13);
+        }
+
+        int indexOf(String symbol) {
+            if (symbol == null) {
+                return -1;
+            }
+            int slot = slot(symbol, seed, keys.length - 1);
+            return symbol.equals(keys[slot]) ? codes[slot] : -1;
+        }
+
+        int indexOf(char[] chars, int from, int to) {
+            int slot = slot(chars, from, to, seed, keys.length - 1);
+            String key = keys[slot];
+            if (key == null || key.length() != to - from) {
+                return -1;
+            }
+            for (int i = from; i < to; i++) {
+                if (key.charAt(i - from) != chars[i]) {
+                    return -1;
+                }
+            }
+            return codes[slot];
+        }
     }
 }
@@ -0,0 +1,22 @@
+package lexis;
+
+import org.jetbrains.annotations.Nullable;
+
+/**Receives lexemes as soon as lexer recognizes them*/
+@FunctionalInterface
+public interface TokenConsumer {
+    /**
+     * @param kind Code of the lexeme
+     * @param payload Identifier index for identifiers, -1 otherwise
+     * @param text Text of identifiers and literals, null for reserved symbols
+     */
+    void accept(int kind, int payload, @Nullable String text);
+    
+    /**
+     * Receives a lexeme with its source position packed by TokenStream.packPosition,
+     * consumers not interested in positions can ignore it
+     */
+    default void accept(int kind, int payload, @Nullable String text, long position) {
+        accept(kind, payload, text);
+    }
+}
@@ -0,0 +1,30 @@
+package lexis;
+
+import org.jetbrains.annotations.Contract;
+
+/**Recognizes the longest lexeme at a position of a char array*/
+public interface TokenMatcher {
+    /**Returned when no lexeme starts at the position*/
+    long NO_MATCH = -1;
+
+    /**
+     * Matches the longest lexeme starting at from, not looking past to
+     * @return Code and end of the lexeme packed by match, or NO_MATCH
+     */
+    long match(char[] chars, int from, int to);
+
+    @Contract(pure = true)
+    static long match(int code, int end) {
+        return ((long) code << 32) | end;
+    }
+
+    @Contract(pure = true)
+    static int code(long match) {
+        return (int) (match >>> 32);
+    }
+
+    @Contract(pure = true)
+    static int end(long match) {
+        return (int) match;
+    }
+}
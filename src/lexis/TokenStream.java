@@ -0,0 +1,344 @@
+package lexis;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sequence of lexemes produced by the lexer.
+ * Kind of a lexeme is its symbol code, payload is identifier index for identifiers,
+ * index in literal table for literals and -1 for reserved symbols.
+ * Source position of every lexeme is kept packed into a long: line, column and length
+ */
+public class TokenStream implements TokenConsumer {
+    /**Kind returned for positions past the end of the stream*/
+    public static final int EOF = -1;
+    /**Position of lexemes added without one*/
+    public static final long NO_POSITION = -1;
+
+    private static final int LENGTH_BITS = 14;
+    private static final int COLUMN_BITS = 20;
+    private static final int LINE_BITS = 29;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int identifierCode;
+    private final int literalCode;
+    private int[] kinds = new int[INITIAL_CAPACITY];
+    private int[] payloads = new int[INITIAL_CAPACITY];
+    private long[] positions = new long[INITIAL_CAPACITY];
+    private final List<String> literals = new ArrayList<>();
+    private int size = 0;
+    //Line of lexemes being added, lexers advance it on line breaks
+    private int line = 0;
+
+    public TokenStream(int identifierCode, int literalCode) {
+        this.identifierCode = identifierCode;
+        this.literalCode = literalCode;
+    }
+
+    public TokenStream(@NotNull SymbolPack pack) {
+        this(pack.getIdentifierCode(), pack.getLiteralCode());
+    }
+
+    /**Appends a lexeme with raw kind and payload*/
+    public void add(int kind, int payload) {
+        add(kind, payload, NO_POSITION);
+    }
+
+    /**Appends a lexeme with raw kind, payload and packed position*/
+    public void add(int kind, int payload, long position) {
+        ensureCapacity(size + 1);
+        kinds[size] = kind;
+        payloads[size] = payload;
+        positions[size] = position;
+        size++;
+    }
+
+    public void addSymbol(int code) {
+        add(code, -1);
+    }
+
+    public void addSymbol(int code, long position) {
+        add(code, -1, position);
+    }
+
+    public void addIdentifier(int id) {
+        add(identifierCode, id);
+    }
+
+    public void addIdentifier(int id, long position) {
+        add(identifierCode, id, position);
+    }
+
+    public void addLiteral(@NotNull String text) {
+        addLiteral(text, NO_POSITION);
+    }
+
+    public void addLiteral(@NotNull String text, long position) {
+        literals.add(text);
+        add(literalCode, literals.size() - 1, position);
+    }
+    
+    @Override
+    public void accept(int kind, int payload, @Nullable String text) {
+        accept(kind, payload, text, NO_POSITION);
+    }
+    
+    @Override
+    public void accept(int kind, int payload, @Nullable String text, long position) {
+        if (kind == literalCode) {
+            addLiteral(text, position);
+        }
+        else {
+            add(kind, payload, position);
+        }
+    }
+    
+    /**Packs position of a lexeme on the current line*/
+    @Contract(pure = true)
+    public long position(int column, int length) {
+        return packPosition(line, column, length);
+    }
+    
+    /**Returns line of lexemes being added*/
+    @Contract(pure = true)
+    public int getLine() {
+        return line;
+    }
+    
+    /**Sets line of lexemes added after the call*/
+    public void setLine(int line) {
+        this.line = line;
+    }
+    
+    /**Moves lexemes starting from index by delta lines*/
+    public void shiftLines(int from, int delta) {
+        for (int i = from; i < size; i++) {
+            if (positions[i] != NO_POSITION) {
+                positions[i] = movePosition(positions[i], delta);
+            }
+        }
+    }
+    
+    /**
+     * Replaces lexemes in range with lexemes of the other stream,
+     * which has to use the same identifier and literal codes
+     */
+    public void replace(int from, int to, @NotNull TokenStream other) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Range " + from + ".." + to + ", size: " + size);
+        }
+        int added = other.size;
+        int newSize = size - (to - from) + added;
+        ensureCapacity(newSize);
+        System.arraycopy(kinds, to, kinds, from + added, size - to);
+        System.arraycopy(payloads, to, payloads, from + added, size - to);
+        System.arraycopy(positions, to, positions, from + added, size - to);
+        for (int i = 0; i < added; i++) {
+            kinds[from + i] = other.kinds[i];
+            positions[from + i] = other.positions[i];
+            if (other.kinds[i] == literalCode) {
+                literals.add(other.literals.get(other.payloads[i]));
+                payloads[from + i] = literals.size() - 1;
+            }
+            else {
+                payloads[from + i] = other.payloads[i];
+            }
+        }
+        size = newSize;
+        
+        //Drops texts of replaced literals once they outnumber the lexemes
+        if (literals.size() > 2 * size + INITIAL_CAPACITY) {
+            List<String> live = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                if (kinds[i] == literalCode) {
+                    live.add(literals.get(payloads[i]));
+                    payloads[i] = live.size() - 1;
+                }
+            }
+            literals.clear();
+            literals.addAll(live);
+        }
+    }
+    
+    private void ensureCapacity(int capacity) {
+        if (capacity > kinds.length) {
+            int length = Math.max(capacity, kinds.length * 2);
+            kinds = Arrays.copyOf(kinds, length);
+            payloads = Arrays.copyOf(payloads, length);
+            positions = Arrays.copyOf(positions, length);
+        }
+    }
+    
+    /**Removes all lexemes, keeping allocated storage*/
+    public void clear() {
+        size = 0;
+        line = 0;
+        literals.clear();
+    }
+    
+    /**
+     * Called when a lexeme past the end is requested, allows subclasses to produce lexemes on demand
+     * @return True if lexeme at index is available after the call
+     */
+    protected boolean fill(int index) {
+        return false;
+    }
+
+    @Contract(pure = true)
+    public int size() {
+        return size;
+    }
+
+    /**Returns kind of lexeme at index, or EOF if index is past the end*/
+    public int kind(int index) {
+        return index < size || fill(index) ? kinds[index] : EOF;
+    }
+
+    public int payload(int index) {
+        if (index >= size && !fill(index)) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return payloads[index];
+    }
+
+    /**Returns packed position of lexeme at index or NO_POSITION*/
+    public long position(int index) {
+        if (index >= size && !fill(index)) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return positions[index];
+    }
+
+    /**Returns line of lexeme at index, starting from 0, or -1 if position is unknown*/
+    public int line(int index) {
+        long position = position(index);
+        return position == NO_POSITION ? -1 : positionLine(position);
+    }
+
+    /**Returns column of lexeme at index, starting from 0, or -1 if position is unknown*/
+    public int column(int index) {
+        long position = position(index);
+        return position == NO_POSITION ? -1 : positionColumn(position);
+    }
+
+    /**Returns length of lexeme at index in source chars or -1 if position is unknown*/
+    public int length(int index) {
+        long position = position(index);
+        return position == NO_POSITION ? -1 : positionLength(position);
+    }
+
+    /**Packs position, values too large for their fields are saturated*/
+    @Contract(pure = true)
+    public static long packPosition(int line, int column, int length) {
+        long l = Math.min(Math.max(line, 0), (1L << LINE_BITS) - 1);
+        long c = Math.min(Math.max(column, 0), (1L << COLUMN_BITS) - 1);
+        long n = Math.min(Math.max(length, 0), (1L << LENGTH_BITS) - 1);
+        return (l << (COLUMN_BITS + LENGTH_BITS)) | (c << LENGTH_BITS) | n;
+    }
+
+    @Contract(pure = true)
+    public static int positionLine(long position) {
+        return (int) (position >>> (COLUMN_BITS + LENGTH_BITS));
+    }
+
+    @Contract(pure = true)
+    public static int positionColumn(long position) {
+        return (int) ((position >>> LENGTH_BITS) & ((1L << COLUMN_BITS) - 1));
+    }
+
+    @Contract(pure = true)
+    public static int positionLength(long position) {
+        return (int) (position & ((1L << LENGTH_BITS) - 1));
+    }
+
+    /**Returns position moved by delta lines*/
+    @Contract(pure = true)
+    public static long movePosition(long position, int delta) {
+        return packPosition(positionLine(position) + delta, positionColumn(position), positionLength(position));
+    }
+
+    public boolean isIdentifier(int index) {
+        return kind(index) == identifierCode;
+    }
+
+    public boolean isLiteral(int index) {
+        return kind(index) == literalCode;
+    }
+
+    /**Returns text of literal at index*/
+    public String literal(int index) {
+        if (!isLiteral(index)) {
+            throw new IllegalArgumentException("Lexeme at " + index + " is not a literal");
+        }
+        return literals.get(payloads[index]);
+    }
+
+    public int getIdentifierCode() {
+        return identifierCode;
+    }
+
+    public int getLiteralCode() {
+        return literalCode;
+    }
+
+    /**Returns lexeme at index in string form: code for reserved symbols, "code.value" for identifiers and literals*/
+    @NotNull
+    public String getToken(int index) {
+        int kind = kind(index);
+        if (kind == EOF) {
+            return "EOF";
+        }
+        if (kind == identifierCode) {
+            return identifierCode + "." + payloads[index];
+        }
+        if (kind == literalCode) {
+            return literalCode + "." + literals.get(payloads[index]);
+        }
+        return Integer.toString(kind);
+    }
+
+    /**Returns lexemes in range in string form*/
+    @NotNull
+    public String[] toStrings(int from, int to) {
+        String[] out = new String[to - from];
+        for (int i = from; i < to; i++) {
+            out[i - from] = getToken(i);
+        }
+        return out;
+    }
+
+    @NotNull
+    public String[] toStrings() {
+        return toStrings(0, size);
+    }
+
+    /**Creates a stream from lexemes in string form*/
+    @NotNull
+    public static TokenStream fromStrings(@NotNull String[] data, int identifierCode, int literalCode) {
+        TokenStream stream = new TokenStream(identifierCode, literalCode);
+        for (String s : data) {
+            int dot = s.indexOf('.');
+            if (dot == -1) {
+                stream.addSymbol(Integer.parseInt(s));
+                continue;
+            }
+            int kind = Integer.parseInt(s.substring(0, dot));
+            if (kind == identifierCode) {
+                stream.addIdentifier(Integer.parseInt(s.substring(dot + 1)));
+            }
+            else if (kind == literalCode) {
+                stream.addLiteral(s.substring(dot + 1));
+            }
+            else {
+                throw new IllegalArgumentException(s + " is not a valid lexeme");
+            }
+        }
+        return stream;
+    }
+}
@@ -0,0 +1,281 @@
+package syntax;
+
+import core.Parser;
+import lexis.TokenStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+import static syntax.GrammarProgram.*;
+
+/**
+ * Base of parsers generated from a grammar program by ParserGenerator, with the semantics of the grammar interpreter:
+ * results, output trees, errors and identifier types are the same.
+ * Generated classes search every non-terminal symbol in its own method, calling other symbols directly.
+ * Patterns with loops or selections and repeated operations are matched here, and generated classes are loaded by another class loader,
+ * so everything they use is protected.
+ * Searches use the thread stack like pattern search, deep nesting of the input may overflow it.
+ * A parser keeps the state of one parse, so it can not be used by several threads at once
+ */
+public abstract class GeneratedParser implements Parser {
+    /**Error of patterns which did not fail at a lexeme*/
+    protected static final OperationResult.SyntaxError UNKNOWN_ERROR = PatternState.UNKNOWN_ERROR;
+
+    private final GrammarProgram program;
+    //State of the current parse
+    protected TokenStream data;
+    @Nullable
+    private ParseContext context;
+    //Last position each symbol is being searched at, or -1
+    private final int[] entered;
+
+    /**
+     * @param fingerprint Fingerprint of the program the class was generated from
+     * @throws IllegalArgumentException If the program differs from the one the class was generated from
+     */
+    protected GeneratedParser(@NotNull GrammarProgram program, int fingerprint) {
+        if (fingerprint(program) != fingerprint) {
+            throw new IllegalArgumentException("Parser " + getClass().getName() + " was generated from another grammar");
+        }
+        this.program = program;
+        this.entered = new int[program.getSymbolCount()];
+    }
+
+    /**Computes hash of instructions and lookahead checks of the program, which generated code depends on*/
+    static int fingerprint(@NotNull GrammarProgram program) {
+        int hash = Arrays.hashCode(program.names);
+        hash = hash * 31 + Arrays.hashCode(program.firstPatterns);
+        hash = hash * 31 + Arrays.hashCode(program.patternCounts);
+        hash = hash * 31 + Arrays.hashCode(program.starts);
+        hash = hash * 31 + Arrays.hashCode(program.opcodes);
+        hash = hash * 31 + Arrays.hashCode(program.operands);
+        hash = hash * 31 + Arrays.hashCode(program.flags);
+        hash = hash * 31 + Arrays.hashCode(program.repeats);
+        hash = hash * 31 + Arrays.deepHashCode(program.varSlots);
+        hash = hash * 31 + Arrays.deepHashCode(program.typeSlots);
+        hash = hash * 31 + Arrays.hashCode(program.prunable);
+        hash = hash * 31 + Arrays.hashCode(program.firsts);
+        return hash;
+    }
+
+    /**
+     * Parses data from the main symbol of the program
+     * @param context State of the parse memoizing results, null to parse without memoization
+     * @throws IllegalStateException If the pack has no main symbol
+     */
+    @NotNull
+    public OperationResult parse(@NotNull TokenStream data, @Nullable ParseContext context) throws PatternSearchException {
+        if (program.mainSymbol == -1) {
+            throw new IllegalStateException("Main symbol \"" + program.pack.getMainSymbol() + "\" not found");
+        }
+        this.data = data;
+        this.context = context;
+        Arrays.fill(entered, -1);
+        try {
+            return search(program.mainSymbol, 0, -1);
+        }
+        finally {
+            this.data = null;
+            this.context = null;
+        }
+    }
+
+    @Override
+    public OperationResult process(String[] input) throws PatternSearchException {
+        return process(TokenStream.fromStrings(input, program.identifierCode, program.literalCode));
+    }
+
+    @Override
+    public OperationResult process(TokenStream input) throws PatternSearchException {
+        return parse(input, null);
+    }
+
+    @NotNull
+    public GrammarProgram getProgram() {
+        return program;
+    }
+
+    /**
+     * Searches patterns of the non-terminal symbol at index
+     * @param caller Pattern calling the symbol, -1 for the main symbol
+     */
+    @NotNull
+    protected abstract OperationResult search(int symbol, int index, int caller) throws PatternSearchException;
+
+    /**Returns result of the symbol at index stored in the context, or null*/
+    @Nullable
+    protected final OperationResult recall(int symbol, int index) {
+        return context != null ? context.get(symbol, index) : null;
+    }
+
+    protected final void remember(int symbol, int index, @NotNull OperationResult result) {
+        if (context != null) {
+            context.put(symbol, index, result);
+        }
+    }
+
+    /**
+     * Marks the symbol searched at index
+     * @return Position the symbol was searched at before, restored by exit
+     * @throws PatternSearchException If the symbol is already searched at index, which would never end
+     */
+    protected final int enter(int symbol, int index, int caller) throws PatternSearchException {
+        int outer = entered[symbol];
+        //Symbols are searched at growing positions, so the last search of the symbol is at index if any is
+        if (outer == index) {
+            throw new PatternSearchException(program.names[symbol], caller != -1 ? program.sources[caller] : null, index, "Left recursion of symbol " + program.names[symbol]);
+        }
+        entered[symbol] = index;
+        return outer;
+    }
+
+    protected final void exit(int symbol, int outer) {
+        entered[symbol] = outer;
+    }
+
+    /**
+     * Applies failure of the pattern skipped as it can not start with the lookahead
+     * @return Error of the symbol after the pattern
+     */
+    @NotNull
+    protected final OperationResult.SyntaxError skip(int p, int index, @Nullable OperationResult.SyntaxError error) {
+        String message = program.skipErrors[p];
+        return pick(error, index == 0 || message == null ? UNKNOWN_ERROR : expected(message, index));
+    }
+
+    /**Returns failure of the symbol when its last pattern is skipped*/
+    @NotNull
+    protected final OperationResult skipped(int p, int index, @NotNull OperationResult.SyntaxError error) {
+        return new OperationResult(index, index, false, program.skipTrees[p], error);
+    }
+
+    /**Returns the error with the higher index, the first one if they are equal*/
+    @Nullable
+    protected static OperationResult.SyntaxError pick(@Nullable OperationResult.SyntaxError error, @Nullable OperationResult.SyntaxError other) {
+        return OperationResult.SyntaxError.pick(error, other);
+    }
+
+    /**Creates an error of a lexeme at the position not matching an operation*/
+    @NotNull
+    protected final OperationResult.SyntaxError expected(@NotNull String message, int position) {
+        String token = data.getToken(position);
+        return new OperationResult.SyntaxError(message + token + " at " + position, token, position);
+    }
+
+    /**Creates the exception of a missing symbol reached by the instruction*/
+    @NotNull
+    protected final PatternSearchException missing(int ins, int position) {
+        return new PatternSearchException(program.texts[ins], null, position, "Symbol does not exist: " + program.texts[ins]);
+    }
+
+    @NotNull
+    protected final SyntaxNode lexeme(int position) {
+        return SyntaxNode.lexeme(data.getToken(position));
+    }
+
+    /**Returns value of the terminal symbol matched by the instruction*/
+    @NotNull
+    protected final SyntaxNode leaf(int ins) {
+        return program.leaves[ins];
+    }
+
+    protected static int newPosition(@NotNull OperationResult result) {
+        return result.getNewPosition();
+    }
+
+    @NotNull
+    protected final SyntaxNode tree(int symbol, int p, @NotNull SyntaxNode[] vars) {
+        return program.buildTree(symbol, p, vars);
+    }
+
+    protected final void assignTypes(int p, int index, @NotNull SyntaxNode[] vars, @NotNull SyntaxNode[] types) throws PatternSearchException {
+        program.assignTypes(p, index, vars, types, false);
+    }
+
+    /**
+     * Matches the pattern of the symbol at index, clearing variables first
+     * @param error Error of the symbol before the pattern
+     * @return Result of the symbol if the pattern matched, otherwise failure with the error after the pattern
+     */
+    @NotNull
+    protected final OperationResult match(int symbol, int p, int index, @NotNull SyntaxNode[] vars, @NotNull SyntaxNode[] types, @Nullable OperationResult.SyntaxError error) throws PatternSearchException {
+        GrammarProgram g = program;
+        Arrays.fill(vars, null);
+        Arrays.fill(types, null);
+        PatternState s = new PatternState();
+        s.begin(g, symbol, p, index);
+        boolean matched = true;
+        while (s.i < s.length) {
+            s.enter(g);
+            int ins = s.start + s.i;
+
+            //Performs the instruction
+            OperationResult res = g.repeats[ins] != Repetition.NONE ? repeat(ins, s.position, p) : perform(ins, s.position, p);
+            boolean ok = res.isSuccess();
+            SyntaxNode value = res.getTree();
+
+            //Stores variables and identifier types
+            for (int slot : g.varSlots[ins]) {
+                vars[slot] = value;
+            }
+            if (ok) {
+                for (int slot : g.typeSlots[ins]) {
+                    types[slot] = value;
+                }
+            }
+            if (s.complete(g, ok, res.getNewPosition(), res.getError()) == PatternState.FAILED) {
+                matched = false;
+                break;
+            }
+        }
+
+        error = pick(error, s.patternError);
+        if (!matched) {
+            return new OperationResult(index, index, false, g.buildTree(symbol, p, vars), error);
+        }
+        g.assignTypes(p, index, vars, types, false);
+        return new OperationResult(index, s.position, true, g.buildTree(symbol, p, vars), error);
+    }
+
+    /**
+     * Performs the repeated instruction at index, iteration by iteration
+     * @param caller Pattern of the instruction
+     */
+    @NotNull
+    protected final OperationResult repeat(int ins, int index, int caller) throws PatternSearchException {
+        Repetition repetition = new Repetition();
+        repetition.begin(program.repeats[ins], index);
+        while (repetition.add(perform(ins, repetition.position, caller))) {
+            //Iterations go on while they match
+        }
+        return repetition.getResult();
+    }
+
+    /**Performs the instruction of the pattern once at the position*/
+    @NotNull
+    private OperationResult perform(int ins, int position, int caller) throws PatternSearchException {
+        GrammarProgram g = program;
+        switch (g.opcodes[ins]) {
+            case TOKEN: {
+                int kind = data.kind(position);
+                int operand = g.operands[ins];
+                if ((operand & IDENTIFIER) != 0 && kind == g.identifierCode || (operand & LITERAL) != 0 && kind == g.literalCode) {
+                    return new OperationResult(position, position + 1, true, lexeme(position), null);
+                }
+                return new OperationResult(position, position, false, SyntaxNode.EMPTY, expected("Expected identifier or literal, but found: ", position));
+            }
+            case TERM:
+                if (data.kind(position) == g.operands[ins]) {
+                    return new OperationResult(position, position + 1, true, g.leaves[ins], null);
+                }
+                return new OperationResult(position, position, false, SyntaxNode.EMPTY, expected("Expected terminal symbol " + g.texts[ins] + " , but found: ", position));
+            case CALL:
+                return search(g.operands[ins], position, caller);
+            case MISSING:
+                throw missing(ins, position);
+            default:
+                return new OperationResult(position, position, true, SyntaxNode.EMPTY, null);
+        }
+    }
+}
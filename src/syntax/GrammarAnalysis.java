@@ -0,0 +1,311 @@
+package syntax;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import static syntax.GrammarProgram.*;
+
+/**
+ * FIRST and FOLLOW sets of a grammar program as bitsets over lexeme kinds.
+ * Sets may be larger than exact ones, as every operation of a loop body may be first, but never smaller:
+ * a pattern which is not nullable and does not have the lookahead in its FIRST set fails at the lookahead
+ */
+public final class GrammarAnalysis {
+    private final GrammarProgram program;
+
+    //By symbol
+    private final BitSet[] firsts;
+    private final boolean[] nullable;
+    //Symbols reaching missing symbols, which may start with anything
+    private final boolean[] open;
+    private final BitSet[] follows;
+    //Symbols which may end the input
+    private final boolean[] followsEnd;
+
+    //By pattern
+    final BitSet[] patternFirsts;
+    final boolean[] patternNullable;
+    final boolean[] patternOpen;
+    //Optional instructions of patterns and starts of innermost loops around them or -1, indexed like instructions
+    private final boolean[] optional;
+    private final int[] loops;
+
+    private final List<String> conflicts = new ArrayList<>();
+
+    GrammarAnalysis(@NotNull GrammarProgram program) {
+        this.program = program;
+        int symbols = program.getSymbolCount();
+        int patterns = program.starts.length;
+        firsts = new BitSet[symbols];
+        nullable = new boolean[symbols];
+        open = new boolean[symbols];
+        follows = new BitSet[symbols];
+        followsEnd = new boolean[symbols];
+        for (int s = 0; s < symbols; s++) {
+            firsts[s] = new BitSet();
+            follows[s] = new BitSet();
+        }
+        patternFirsts = new BitSet[patterns];
+        patternNullable = new boolean[patterns];
+        patternOpen = new boolean[patterns];
+        optional = new boolean[program.getInstructionCount()];
+        loops = new int[program.getInstructionCount()];
+        Arrays.fill(loops, -1);
+
+        markOptional();
+        computeFirsts();
+        computeFollows();
+        findConflicts();
+    }
+
+    /**Marks instructions between loop and selection markers for FOLLOW sets, unclosed ones make the pattern open*/
+    private void markOptional() {
+        GrammarProgram g = program;
+        for (int p = 0; p < g.starts.length; p++) {
+            int start = g.starts[p];
+            for (int i = 0; i < g.lengths[p]; i++) {
+                int ins = start + i;
+                int end = i;
+                if ((g.flags[ins] & LOOP_START) != 0) {
+                    if (g.loopEnds[ins] == -1) {
+                        patternOpen[p] = true;
+                    }
+                    else {
+                        end = g.loopEnds[ins];
+                        Arrays.fill(loops, ins + 1, start + end + 1, ins);
+                    }
+                }
+                if ((g.flags[ins] & SELECT_START) != 0) {
+                    if (g.selectPoints[ins] == null) {
+                        patternOpen[p] = true;
+                    }
+                    else {
+                        end = Math.max(end, g.selectPoints[ins][g.selectPoints[ins].length - 1]);
+                    }
+                }
+                if ((g.flags[ins] & (LOOP_START | SELECT_START)) != 0) {
+                    Arrays.fill(optional, ins, start + end + 1, true);
+                }
+            }
+        }
+    }
+
+    private void computeFirsts() {
+        GrammarProgram g = program;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int s = 0; s < g.getSymbolCount(); s++) {
+                for (int p = g.firstPatterns[s]; p < g.firstPatterns[s] + g.patternCounts[s]; p++) {
+                    BitSet first = new BitSet();
+                    boolean[] flags = new boolean[]{patternOpen[p]};
+                    patternNullable[p] = addFirst(g.starts[p], g.starts[p] + g.lengths[p], p, first, flags);
+                    patternFirsts[p] = first;
+                    patternOpen[p] = flags[0];
+
+                    int count = firsts[s].cardinality();
+                    firsts[s].or(first);
+                    if (firsts[s].cardinality() != count || patternNullable[p] && !nullable[s] || patternOpen[p] && !open[s]) {
+                        nullable[s] |= patternNullable[p];
+                        open[s] |= patternOpen[p];
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds FIRST set of the instruction, marking open[0] if it is a missing symbol
+     * @return Whether the instruction may match no lexemes
+     */
+    private boolean addFirst(int ins, @NotNull BitSet first, @NotNull boolean[] open) {
+        int repeat = program.repeats[ins];
+        return addOperationFirst(ins, first, open) || repeat == Repetition.ZERO_OR_MORE || repeat == Repetition.OPTIONAL;
+    }
+
+    /**Adds FIRST set of one iteration of the instruction*/
+    private boolean addOperationFirst(int ins, @NotNull BitSet first, @NotNull boolean[] open) {
+        GrammarProgram g = program;
+        switch (g.opcodes[ins]) {
+            case TOKEN:
+                if ((g.operands[ins] & IDENTIFIER) != 0) {
+                    first.set(g.identifierCode);
+                }
+                if ((g.operands[ins] & LITERAL) != 0) {
+                    first.set(g.literalCode);
+                }
+                return false;
+            case TERM:
+                first.set(g.operands[ins]);
+                return false;
+            case CALL:
+                first.or(firsts[g.operands[ins]]);
+                open[0] |= this.open[g.operands[ins]];
+                return nullable[g.operands[ins]];
+            case MISSING:
+                open[0] = true;
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Adds FIRST set of instructions from start to end: bodies of loops are optional, branches of selections are alternatives.
+     * Constructs crossing the end mark the pattern open
+     * @return Whether the instructions may match no lexemes
+     */
+    private boolean addFirst(int start, int end, int pattern, @NotNull BitSet first, @NotNull boolean[] open) {
+        GrammarProgram g = program;
+        for (int ins = start; ins < end; ins++) {
+            if (!addFirst(ins, first, open)) {
+                return false;
+            }
+            if ((g.flags[ins] & LOOP_START) != 0) {
+                int loopEnd = g.starts[pattern] + g.loopEnds[ins];
+                if (g.loopEnds[ins] == -1 || loopEnd >= end) {
+                    open[0] = true;
+                    return true;
+                }
+                addFirst(ins + 1, loopEnd + 1, pattern, first, open);
+                ins = loopEnd;
+            }
+            else if ((g.flags[ins] & SELECT_START) != 0) {
+                int[] points = g.selectPoints[ins];
+                if (points == null || g.starts[pattern] + points[points.length - 1] >= end) {
+                    open[0] = true;
+                    return true;
+                }
+                boolean empty = false;
+                for (int k = 0; k < points.length - 1; k++) {
+                    empty |= addFirst(g.starts[pattern] + points[k] + 1, g.starts[pattern] + points[k + 1], pattern, first, open);
+                }
+                if (!empty) {
+                    return false;
+                }
+                ins = g.starts[pattern] + points[points.length - 1];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds kinds of lexemes which may be matched first after start and before end, treating loops and selections as optional
+     * @return Whether the instructions may match no lexemes
+     */
+    private boolean addFollowing(int start, int end, @NotNull BitSet first) {
+        boolean[] ignored = new boolean[1];
+        for (int ins = start; ins < end; ins++) {
+            if (!addFirst(ins, first, ignored) && !optional[ins]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void computeFollows() {
+        GrammarProgram g = program;
+        if (g.mainSymbol != -1) {
+            followsEnd[g.mainSymbol] = true;
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int s = 0; s < g.getSymbolCount(); s++) {
+                for (int p = g.firstPatterns[s]; p < g.firstPatterns[s] + g.patternCounts[s]; p++) {
+                    int start = g.starts[p];
+                    int end = start + g.lengths[p];
+                    for (int ins = start; ins < end; ins++) {
+                        if (g.opcodes[ins] != CALL) {
+                            continue;
+                        }
+                        int target = g.operands[ins];
+                        BitSet follow = new BitSet();
+                        boolean last = addFollowing(ins + 1, end, follow);
+                        //Instructions in a loop may be followed by the loop body again, repeated ones by themselves
+                        if (loops[ins] != -1) {
+                            addFollowing(loops[ins] + 1, end, follow);
+                        }
+                        if (g.repeats[ins] == Repetition.ZERO_OR_MORE || g.repeats[ins] == Repetition.ONE_OR_MORE) {
+                            follow.or(firsts[target]);
+                        }
+                        if (last) {
+                            follow.or(follows[s]);
+                        }
+                        int count = follows[target].cardinality();
+                        follows[target].or(follow);
+                        if (follows[target].cardinality() != count || last && followsEnd[s] && !followsEnd[target]) {
+                            followsEnd[target] |= last && followsEnd[s];
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void findConflicts() {
+        GrammarProgram g = program;
+        for (int s = 0; s < g.getSymbolCount(); s++) {
+            int first = g.firstPatterns[s];
+            int last = first + g.patternCounts[s];
+            for (int a = first; a < last; a++) {
+                if (patternOpen[a]) {
+                    conflicts.add("Alternative " + (a - first) + " of \"" + g.names[s] + "\" reaches a missing symbol or an unclosed loop or selection");
+                }
+                for (int b = a + 1; b < last; b++) {
+                    if (patternFirsts[a].intersects(patternFirsts[b])) {
+                        BitSet common = (BitSet) patternFirsts[a].clone();
+                        common.and(patternFirsts[b]);
+                        conflicts.add("Alternatives " + (a - first) + " and " + (b - first) + " of \"" + g.names[s] + "\" may start with " + common);
+                    }
+                    if (patternNullable[a] && patternNullable[b]) {
+                        conflicts.add("Alternatives " + (a - first) + " and " + (b - first) + " of \"" + g.names[s] + "\" may both be empty");
+                    }
+                    else if (patternNullable[a] && patternFirsts[b].intersects(follows[s]) || patternNullable[b] && patternFirsts[a].intersects(follows[s])) {
+                        conflicts.add("Alternatives " + (a - first) + " and " + (b - first) + " of \"" + g.names[s] + "\" may be empty and start with what follows it");
+                    }
+                }
+            }
+        }
+    }
+
+    /**Returns kinds of lexemes the symbol may start with*/
+    @NotNull
+    public BitSet getFirst(int symbol) {
+        return (BitSet) firsts[symbol].clone();
+    }
+
+    /**Returns kinds of lexemes which may follow the symbol*/
+    @NotNull
+    public BitSet getFollow(int symbol) {
+        return (BitSet) follows[symbol].clone();
+    }
+
+    /**Checks whether the symbol may match no lexemes*/
+    public boolean isNullable(int symbol) {
+        return nullable[symbol];
+    }
+
+    /**Checks whether the symbol may be followed by the end of input*/
+    public boolean mayEnd(int symbol) {
+        return followsEnd[symbol];
+    }
+
+    /**Checks whether each lookahead selects at most one alternative of every symbol*/
+    public boolean isLL1() {
+        return conflicts.isEmpty();
+    }
+
+    /**Returns descriptions of choices which can not be made by one lookahead*/
+    @NotNull
+    public List<String> getConflicts() {
+        return Collections.unmodifiableList(conflicts);
+    }
+}
@@ -0,0 +1,562 @@
+package syntax;
+
+import lexis.TokenStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import static syntax.GrammarProgram.*;
+
+/**
+ * Executes a grammar program over one stream of lexemes with the semantics of pattern search:
+ * results, output strings, errors and identifier types are the same. Operations are not traced to the syntax log.
+ * Patterns which can not start with the lookahead are skipped, applying the effects they would have when failing.
+ * Searches of symbols are frames on a stack in the heap, so nesting of the input does not grow the thread stack,
+ * and repeated operations call their symbol again from the same frame.
+ * Left recursion, which overflows the thread stack in pattern search, is reported as an exception
+ */
+class GrammarInterpreter {
+    //States of a frame after its operations were performed, besides CONTINUE and FAILED of patterns
+    private static final int MATCHED = 1;
+    private static final int CALL = 3;
+    //Lexemes before an unexpected synchronization symbol at which skips may start
+    private static final int MAX_RECOVERY_START = 32;
+
+    private final GrammarProgram program;
+    private final TokenStream data;
+    @Nullable
+    private final ParseContext context;
+    //Symbols being searched in a dry run, null in parses
+    @Nullable
+    private final boolean[] active;
+    //Lexemes skipped to recover from errors, null if the parse does not recover
+    @Nullable
+    private BitSet skipped;
+    //Frames of symbols being searched, reused when popped
+    private Frame[] frames = new Frame[16];
+    private int depth = 0;
+    //End of lexemes the top frame depends on, so results kept over a skip are known
+    private int reach = 0;
+
+    GrammarInterpreter(@NotNull GrammarProgram program, @NotNull TokenStream data, @Nullable ParseContext context) {
+        this(program, data, context, null);
+    }
+
+    private GrammarInterpreter(@NotNull GrammarProgram program, @NotNull TokenStream data, @Nullable ParseContext context, @Nullable boolean[] active) {
+        this.program = program;
+        this.data = data;
+        this.context = context;
+        this.active = active;
+    }
+
+    /**Search of one symbol at one position, with the state of its current pattern*/
+    private static class Frame extends PatternState {
+        int index;
+        //End pattern
+        int last;
+        //Whether patterns may be skipped by the lookahead kind
+        boolean predict;
+        int kind;
+        //Reach of the calling frame
+        int outer;
+        OperationResult.SyntaxError error;
+        SyntaxNode[] vars = new SyntaxNode[0];
+        SyntaxNode[] types = new SyntaxNode[0];
+        //State of the current operation if it is repeated
+        final Repetition repetition = new Repetition();
+    }
+
+    /**Searches patterns of the symbol at index, reusing results stored in the context*/
+    @NotNull
+    OperationResult search(int symbol, int index) throws PatternSearchException {
+        if (context == null) {
+            return execute(symbol, index, program.firstPatterns[symbol], program.firstPatterns[symbol] + program.patternCounts[symbol]);
+        }
+        OperationResult result = context.get(symbol, index);
+        if (result == null) {
+            int outer = reach;
+            reach = 0;
+            result = execute(symbol, index, program.firstPatterns[symbol], program.firstPatterns[symbol] + program.patternCounts[symbol]);
+            context.put(symbol, index, result, reach);
+            reach = Math.max(outer, reach);
+        }
+        else {
+            reach = Math.max(reach, context.extent(symbol, index));
+        }
+        return result;
+    }
+
+    /**Searches patterns from first to last of the symbol at index, running the frames it calls until it returns*/
+    @NotNull
+    private OperationResult execute(int symbol, int index, int first, int last) throws PatternSearchException {
+        int base = depth;
+        try {
+            Frame f = push(symbol, index, first, last);
+            OperationResult result = startPattern(f);
+            while (true) {
+                if (result == null) {
+                    int state = advance(f);
+                    if (state == CALL) {
+                        f = frames[depth - 1];
+                        result = startPattern(f);
+                    }
+                    else {
+                        result = endPattern(f, state);
+                    }
+                    continue;
+                }
+
+                //Returns the result to the operation of the calling frame
+                int extent = reach;
+                pop(f);
+                if (depth == base) {
+                    return result;
+                }
+                if (context != null) {
+                    context.put(f.symbol, f.index, result, extent);
+                }
+                f = frames[depth - 1];
+                int ins = f.start + f.i;
+                int state = program.repeats[ins] != Repetition.NONE ? repeat(f, ins, result) : complete(f, result.isSuccess(), result.getNewPosition(), result.getTree(), result.getError());
+                if (state == CALL) {
+                    f = frames[depth - 1];
+                    result = startPattern(f);
+                }
+                else {
+                    result = state == PatternState.CONTINUE ? null : endPattern(f, state);
+                }
+            }
+        }
+        finally {
+            while (depth > base) {
+                pop(frames[depth - 1]);
+            }
+        }
+    }
+
+    @NotNull
+    private Frame push(int symbol, int index, int first, int last) {
+        GrammarProgram g = program;
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+        }
+        Frame f = frames[depth];
+        if (f == null) {
+            f = frames[depth] = new Frame();
+        }
+        depth++;
+        if (active != null) {
+            active[symbol] = true;
+        }
+        f.outer = reach;
+        reach = index + 1;
+
+        f.symbol = symbol;
+        f.index = index;
+        f.p = first;
+        f.last = last;
+        f.predict = active == null && g.predictive[symbol];
+        f.kind = f.predict ? kind(index) : -1;
+        f.error = null;
+        if (f.vars.length < g.maxVars[symbol]) {
+            f.vars = new SyntaxNode[g.maxVars[symbol]];
+        }
+        if (f.types.length < g.maxTypes[symbol]) {
+            f.types = new SyntaxNode[g.maxTypes[symbol]];
+        }
+        return f;
+    }
+
+    /**
+     * Checks whether the symbol is already searched at the position, so searching it again would never end.
+     * Frames are searched at growing positions, so only the top frames at the position are checked
+     */
+    private boolean isEntered(int symbol, int position) {
+        for (int k = depth - 1; k >= 0 && frames[k].index == position; k--) {
+            if (frames[k].symbol == symbol) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void pop(@NotNull Frame f) {
+        depth--;
+        reach = Math.max(f.outer, reach);
+        if (active != null) {
+            active[f.symbol] = false;
+        }
+    }
+
+    /**
+     * Starts the current or a later pattern of the frame, skipping those which can not start with the lookahead
+     * @return Failure of the symbol if no pattern is left, null if a pattern started
+     */
+    @Nullable
+    private OperationResult startPattern(@NotNull Frame f) {
+        GrammarProgram g = program;
+        for (; f.p < f.last; f.p++) {
+            int p = f.p;
+            if (f.predict && g.prunable[p] && (f.kind < 0 || !g.firsts[p].get(f.kind))) {
+                //Skips the pattern, which fails at the first lexeme without consuming it
+                OperationResult.SyntaxError err = f.index == 0 || g.skipErrors[p] == null ? PatternState.UNKNOWN_ERROR : expected(g.skipErrors[p], f.index);
+                if (f.error == null || err.getIndex() > f.error.getIndex()) {
+                    f.error = err;
+                }
+                if (p == f.last - 1) {
+                    return new OperationResult(f.index, f.index, false, g.skipTrees[p], f.error);
+                }
+                continue;
+            }
+            Arrays.fill(f.vars, 0, g.maxVars[f.symbol], null);
+            Arrays.fill(f.types, 0, g.maxTypes[f.symbol], null);
+            f.begin(g, f.symbol, p, f.index);
+            return null;
+        }
+        return new OperationResult(f.index, f.index, false, program.buildTree(f.symbol, f.last - 1, f.vars), f.error);
+    }
+
+    /**
+     * Finishes the current pattern of the frame, starting the next one if it failed
+     * @return Result of the symbol, null if the next pattern started
+     */
+    @Nullable
+    private OperationResult endPattern(@NotNull Frame f, int state) throws PatternSearchException {
+        if (f.patternError != null && (f.error == null || f.patternError.getIndex() > f.error.getIndex())) {
+            f.error = f.patternError;
+        }
+        if (state == MATCHED) {
+            program.assignTypes(f.p, f.index, f.vars, f.types, active != null);
+            return new OperationResult(f.index, f.position, true, program.buildTree(f.symbol, f.p, f.vars), f.error);
+        }
+        f.p++;
+        return startPattern(f);
+    }
+
+    /**
+     * Performs operations of the current pattern of the frame until it ends or calls a symbol which is not memoized
+     * @return MATCHED, FAILED, or CALL after pushing the frame of the called symbol
+     */
+    private int advance(@NotNull Frame f) throws PatternSearchException {
+        GrammarProgram g = program;
+        while (f.i < f.length) {
+            f.enter(g);
+            int ins = f.start + f.i;
+
+            //Performs the instruction
+            int position = f.position;
+            int state;
+            if (g.repeats[ins] != Repetition.NONE) {
+                f.repetition.begin(g.repeats[ins], position);
+                OperationResult res = perform(f, ins, position);
+                state = res == null ? CALL : repeat(f, ins, res);
+                if (state != PatternState.CONTINUE) {
+                    return state;
+                }
+                continue;
+            }
+            switch (g.opcodes[ins]) {
+                case TOKEN: {
+                    int kind = kind(position);
+                    int operand = g.operands[ins];
+                    if ((operand & IDENTIFIER) != 0 && kind == g.identifierCode || (operand & LITERAL) != 0 && kind == g.literalCode) {
+                        state = complete(f, true, next(position), SyntaxNode.lexeme(data.getToken(position)), null);
+                    }
+                    else {
+                        state = complete(f, false, position, SyntaxNode.EMPTY, expected("Expected identifier or literal, but found: ", position));
+                    }
+                    break;
+                }
+                case TERM:
+                    if (kind(position) == g.operands[ins]) {
+                        state = complete(f, true, next(position), g.leaves[ins], null);
+                    }
+                    else {
+                        state = complete(f, false, position, SyntaxNode.EMPTY, expected("Expected terminal symbol " + g.texts[ins] + " , but found: ", position));
+                    }
+                    break;
+                case GrammarProgram.CALL: {
+                    OperationResult res = call(f, ins, position);
+                    if (res == null) {
+                        return CALL;
+                    }
+                    state = complete(f, res.isSuccess(), res.getNewPosition(), res.getTree(), res.getError());
+                    break;
+                }
+                case MISSING:
+                    throw new PatternSearchException(g.texts[ins], null, position, "Symbol does not exist: " + g.texts[ins]);
+                default:
+                    state = complete(f, true, position, SyntaxNode.EMPTY, null);
+                    break;
+            }
+            if (state != PatternState.CONTINUE) {
+                return state;
+            }
+        }
+        return MATCHED;
+    }
+
+    /**
+     * Searches the symbol called by the instruction at the position, unless its result is memoized
+     * @return Result of the symbol, or null after pushing its frame
+     */
+    @Nullable
+    private OperationResult call(@NotNull Frame f, int ins, int position) throws PatternSearchException {
+        GrammarProgram g = program;
+        int target = g.operands[ins];
+        OperationResult res = context != null ? context.get(target, position) : null;
+        if (res != null) {
+            reach = Math.max(reach, context.extent(target, position));
+        }
+        else if (active != null && active[target]) {
+            //Left recursion, which never ends in a parse
+            res = new OperationResult(position, position, false, SyntaxNode.EMPTY, null);
+            if (context != null) {
+                context.put(target, position, res, position + 1);
+            }
+        }
+        if (res == null) {
+            if (isEntered(target, position)) {
+                throw new PatternSearchException(g.names[target], g.sources[f.p], position, "Left recursion of symbol " + g.names[target]);
+            }
+            push(target, position, g.firstPatterns[target], g.firstPatterns[target] + g.patternCounts[target]);
+        }
+        return res;
+    }
+
+    /**
+     * Performs one iteration of the repeated instruction at the position
+     * @return Result of the iteration, or null after pushing the frame of the called symbol
+     */
+    @Nullable
+    private OperationResult perform(@NotNull Frame f, int ins, int position) throws PatternSearchException {
+        GrammarProgram g = program;
+        switch (g.opcodes[ins]) {
+            case TOKEN: {
+                int kind = kind(position);
+                int operand = g.operands[ins];
+                if ((operand & IDENTIFIER) != 0 && kind == g.identifierCode || (operand & LITERAL) != 0 && kind == g.literalCode) {
+                    return new OperationResult(position, next(position), true, SyntaxNode.lexeme(data.getToken(position)), null);
+                }
+                return new OperationResult(position, position, false, SyntaxNode.EMPTY, expected("Expected identifier or literal, but found: ", position));
+            }
+            case TERM:
+                if (kind(position) == g.operands[ins]) {
+                    return new OperationResult(position, next(position), true, g.leaves[ins], null);
+                }
+                return new OperationResult(position, position, false, SyntaxNode.EMPTY, expected("Expected terminal symbol " + g.texts[ins] + " , but found: ", position));
+            case GrammarProgram.CALL:
+                return call(f, ins, position);
+            case MISSING:
+                throw new PatternSearchException(g.texts[ins], null, position, "Symbol does not exist: " + g.texts[ins]);
+            default:
+                return new OperationResult(position, position, true, SyntaxNode.EMPTY, null);
+        }
+    }
+
+    /**
+     * Adds the result of an iteration to the repeated instruction of the frame, performing iterations while they match
+     * @return State after completing the instruction, or CALL after pushing the frame of the next iteration
+     */
+    private int repeat(@NotNull Frame f, int ins, @NotNull OperationResult res) throws PatternSearchException {
+        Repetition repetition = f.repetition;
+        while (repetition.add(res)) {
+            res = perform(f, ins, repetition.position);
+            if (res == null) {
+                return CALL;
+            }
+        }
+        res = repetition.getResult();
+        return complete(f, res.isSuccess(), res.getNewPosition(), res.getTree(), res.getError());
+    }
+
+    /**
+     * Applies the result of the current operation of the frame: stores variables, saves the error and moves to the next operation
+     * @return CONTINUE, or FAILED if the pattern failed
+     */
+    private int complete(@NotNull Frame f, boolean ok, int next, @NotNull SyntaxNode value, @Nullable OperationResult.SyntaxError opError) throws PatternSearchException {
+        GrammarProgram g = program;
+        int ins = f.start + f.i;
+
+        //Stores variables and identifier types
+        for (int slot : g.varSlots[ins]) {
+            f.vars[slot] = value;
+        }
+        if (ok) {
+            for (int slot : g.typeSlots[ins]) {
+                f.types[slot] = value;
+            }
+        }
+
+        return f.complete(g, ok, next, opError);
+    }
+
+    /**Returns kind of the lexeme at the position, which the top frame depends on*/
+    private int kind(int position) {
+        if (position >= reach) {
+            reach = position + 1;
+        }
+        return data.kind(position);
+    }
+
+    /**Returns position of the lexeme after the one at the position, which is not skipped, the top frame depends on skips up to it*/
+    private int next(int position) {
+        int next = skipped == null ? position + 1 : skipped.nextClearBit(position + 1);
+        if (next >= reach) {
+            reach = next + 1;
+        }
+        return next;
+    }
+
+    /**
+     * Searches the symbol from the beginning of data, recovering from errors: after a failure lexemes
+     * from its error up to a synchronization symbol are skipped and data is parsed again.
+     * An unexpected synchronization symbol ends a broken construct, which started after the previous synchronization symbol:
+     * skips of the construct with or without the symbol are tried and the one letting the parse go furthest is kept.
+     * Results which depend only on lexemes before a skip stay in the context, so parsing again searches only
+     * the symbols around and after the skip. Tried skips are undone in the context.
+     * Errors found before a lexeme after the skipped ones is matched are caused by skipping, so they are not reported
+     * @param sync Kinds of synchronization symbols
+     * @param limit Maximal count of errors, after which the parse stops
+     * @return Result of the last parse, failed if any error was found, with errors in the order they were found
+     * @throws IllegalStateException If the interpreter has no context
+     */
+    @NotNull
+    OperationResult recover(int symbol, @NotNull BitSet sync, int limit) throws PatternSearchException {
+        ParseContext context = this.context;
+        if (context == null) {
+            throw new IllegalStateException("Recovery needs a parse context");
+        }
+        context.keepExtents();
+        List<OperationResult.SyntaxError> errors = new ArrayList<>();
+        skipped = new BitSet();
+        int resume = 0;
+        OperationResult result = parseSkipping(symbol);
+        while (true) {
+            OperationResult.SyntaxError error = result.getError();
+            if (result.isSuccess() || error == null) {
+                return errors.isEmpty() ? result : new OperationResult(result, false, errors);
+            }
+            if (errors.isEmpty() || error.getIndex() > resume) {
+                errors.add(error);
+            }
+            int from = skipped.nextClearBit(Math.max(error.getIndex(), resume));
+            if (errors.size() >= limit || data.kind(from) == TokenStream.EOF) {
+                return new OperationResult(result, false, errors);
+            }
+
+            int start = from;
+            int end;
+            if (!sync.get(data.kind(from))) {
+                end = next(from);
+                while (data.kind(end) != TokenStream.EOF && !sync.get(data.kind(end))) {
+                    end = next(end);
+                }
+            }
+            else {
+                //Tries skips ending at the synchronization symbol, from the shortest one, until one parses all data
+                BitSet before = (BitSet) skipped.clone();
+                int best = -1;
+                int bestStart = from;
+                end = from;
+                for (int tries = 0; tries < MAX_RECOVERY_START && best != Integer.MAX_VALUE; tries++) {
+                    int[] ends = {from, next(from)};
+                    for (int k = 0; k < ends.length && best != Integer.MAX_VALUE; k++) {
+                        int tried = ends[k];
+                        if (start == tried) {
+                            continue;
+                        }
+                        context.mark();
+                        skip(start, tried);
+                        int progress = progress(parseSkipping(symbol));
+                        context.rollback();
+                        skipped = (BitSet) before.clone();
+                        if (progress > best) {
+                            best = progress;
+                            bestStart = start;
+                            end = tried;
+                        }
+                    }
+                    start = previous(start);
+                    if (start == -1 || sync.get(data.kind(start))) {
+                        break;
+                    }
+                }
+                start = bestStart;
+            }
+            skip(start, end);
+            resume = end;
+            result = parseSkipping(symbol);
+        }
+    }
+
+    /**Skips lexemes from start to end, removing results which depend on them from the context*/
+    private void skip(int start, int end) {
+        skipped.set(start, end);
+        if (context != null) {
+            context.invalidate(start, end);
+        }
+    }
+
+    /**Searches the symbol from the first lexeme which is not skipped*/
+    @NotNull
+    private OperationResult parseSkipping(int symbol) throws PatternSearchException {
+        return search(symbol, skipped.nextClearBit(0));
+    }
+
+    /**Returns position of the lexeme before the one at the position, which is not skipped, or -1*/
+    private int previous(int position) {
+        return skipped.previousClearBit(position - 1);
+    }
+
+    /**Returns how far the parse got, successful parses got through all data*/
+    private static int progress(@NotNull OperationResult result) {
+        return result.isSuccess() || result.getError() == null ? Integer.MAX_VALUE : result.getError().getIndex();
+    }
+
+    /**Creates an error of a lexeme at the position not matching an operation*/
+    @NotNull
+    private OperationResult.SyntaxError expected(@NotNull String message, int position) {
+        String token = data.getToken(position);
+        return new OperationResult.SyntaxError(message + token + " at " + position, token, position);
+    }
+
+    /**
+     * Computes effects of patterns failing at the first lexeme, which let parses skip them:
+     * the beginning of the first error message and the output tree if the pattern was the last one.
+     * Patterns stay prunable if such a failure performs no other side effects
+     * @param prunable Patterns which can not match without consuming a lexeme of their FIRST set, cleared for others
+     */
+    static void dryRun(@NotNull GrammarProgram program, @NotNull boolean[] prunable, @NotNull String[] skipErrors, @NotNull SyntaxNode[] skipTrees) {
+        //At position 1 of an empty stream every lexeme check fails with the same message ending
+        String ending = "EOF at 1";
+        TokenStream empty = new TokenStream(program.identifierCode, program.literalCode);
+        boolean[] active = new boolean[program.getSymbolCount()];
+        GrammarInterpreter interpreter = new GrammarInterpreter(program, empty, ParseContext.memoizeAll(program.pack), active);
+        for (int s = 0; s < program.getSymbolCount(); s++) {
+            for (int p = program.firstPatterns[s]; p < program.firstPatterns[s] + program.patternCounts[s]; p++) {
+                if (!prunable[p]) {
+                    continue;
+                }
+                Arrays.fill(active, false);
+                try {
+                    OperationResult result = interpreter.execute(s, 1, p, p + 1);
+                    OperationResult.SyntaxError error = result.getError();
+                    if (result.isSuccess() || error == null || error.getIndex() == 1 && !error.toString().endsWith(ending)) {
+                        prunable[p] = false;
+                        continue;
+                    }
+                    skipErrors[p] = error.getIndex() == 1 ? error.toString().substring(0, error.toString().length() - ending.length()) : null;
+                    skipTrees[p] = result.getTree();
+                }
+                catch (PatternSearchException | IllegalStateException e) {
+                    prunable[p] = false;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package syntax;
+
+import lexis.TokenStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Syntax pack lowered into flat instruction arrays, executed by the grammar interpreter.
+ * Symbol names are resolved to indexes, loop and selection markers to jump targets,
+ * variables to slots of their pattern, repeated operations keep their mode. Alternatives are skipped when the lookahead is not in their FIRST set.
+ * The program is immutable and may be shared between parses
+ */
+public final class GrammarProgram {
+    //Opcodes
+    /**Operation which is not a symbol, always succeeds without consuming lexemes*/
+    static final int NOP = 0;
+    /**Identifier or literal lexeme, operand holds IDENTIFIER and LITERAL bits*/
+    static final int TOKEN = 1;
+    /**Terminal symbol, operand holds its code*/
+    static final int TERM = 2;
+    /**Non-terminal symbol, operand holds its index*/
+    static final int CALL = 3;
+    /**Symbol missing in the pack, fails the parse when reached*/
+    static final int MISSING = 4;
+
+    //Operand bits of TOKEN
+    static final int IDENTIFIER = 1;
+    static final int LITERAL = 2;
+
+    //Instruction flags
+    static final int LOOP_START = 1;
+    static final int LOOP_END = 2;
+    static final int SELECT_START = 4;
+
+    private static final int[] NO_SLOTS = new int[0];
+
+    final SyntaxPack pack;
+    final int identifierCode;
+    final int literalCode;
+    final int mainSymbol;
+    //Pattern matching identifiers in variable values and the type marker in type values
+    final Pattern identifiers;
+    final Pattern typeMarker = Pattern.compile("[0-9]*@\\$type");
+
+    //Symbols by index
+    final String[] names;
+    final int[] termCodes;
+    final String[] terms;
+    final int[] firstPatterns;
+    final int[] patternCounts;
+    //Largest count of variable and type slots in patterns of the symbol
+    final int[] maxVars;
+    final int[] maxTypes;
+
+    //Patterns by index, instructions of a pattern are contiguous
+    final int[] starts;
+    final int[] lengths;
+    final SyntaxOperation[][] sources;
+    //Variable names by slot, and slots in the order the output lists them
+    final String[][] varNames;
+    final int[][] varOrders;
+    //Type names by slot, slots in assignment order and variable slots of the same names or -1
+    final String[][] typeNames;
+    final int[][] typeOrders;
+    final int[][] typeVars;
+
+    //Instructions by index
+    final int[] opcodes;
+    final int[] operands;
+    final int[] flags;
+    //Repetition modes
+    final int[] repeats;
+    final String[] texts;
+    //Values of terminal symbols matched by instructions
+    final SyntaxNode[] leaves;
+    //Index of the matching loop end within the pattern, -1 if the loop is not closed
+    final int[] loopEnds;
+    //Points of the selection within the pattern: start, bodies and end, null if the selection is not closed
+    final int[][] selectPoints;
+    final int[][] varSlots;
+    final int[][] typeSlots;
+
+    final GrammarAnalysis analysis;
+    //Patterns skipped when their FIRST set does not have the lookahead, with the error message start and output of such a failure
+    final BitSet[] firsts;
+    final boolean[] prunable;
+    final String[] skipErrors;
+    final SyntaxNode[] skipTrees;
+    //Symbols with prunable patterns
+    final boolean[] predictive;
+
+    private GrammarProgram(@NotNull SyntaxPack pack) {
+        this.pack = pack;
+        this.identifierCode = pack.getIdentifierCode();
+        this.literalCode = pack.getLiteralCode();
+        this.identifiers = Pattern.compile(pack.getIdentifierCode() + ".[0-9]*");
+
+        SyntaxSymbol[] symbols = new SyntaxSymbol[pack.getSymbolCount()];
+        for (SyntaxSymbol symbol : pack.symbolSet()) {
+            symbols[symbol.getId()] = symbol;
+        }
+        int patternCount = 0;
+        int instructionCount = 0;
+        for (SyntaxSymbol symbol : symbols) {
+            if (symbol.getTerm() == null && symbol.getPatterns() != null) {
+                patternCount += symbol.getPatterns().length;
+                for (SyntaxOperation[] pattern : symbol.getPatterns()) {
+                    instructionCount += pattern.length;
+                }
+            }
+        }
+
+        names = new String[symbols.length];
+        termCodes = new int[symbols.length];
+        terms = new String[symbols.length];
+        firstPatterns = new int[symbols.length];
+        patternCounts = new int[symbols.length];
+        maxVars = new int[symbols.length];
+        maxTypes = new int[symbols.length];
+
+        starts = new int[patternCount];
+        lengths = new int[patternCount];
+        sources = new SyntaxOperation[patternCount][];
+        varNames = new String[patternCount][];
+        varOrders = new int[patternCount][];
+        typeNames = new String[patternCount][];
+        typeOrders = new int[patternCount][];
+        typeVars = new int[patternCount][];
+
+        opcodes = new int[instructionCount];
+        operands = new int[instructionCount];
+        flags = new int[instructionCount];
+        repeats = new int[instructionCount];
+        texts = new String[instructionCount];
+        leaves = new SyntaxNode[instructionCount];
+        loopEnds = new int[instructionCount];
+        selectPoints = new int[instructionCount][];
+        varSlots = new int[instructionCount][];
+        typeSlots = new int[instructionCount][];
+
+        int p = 0;
+        int ins = 0;
+        for (int id = 0; id < symbols.length; id++) {
+            SyntaxSymbol symbol = symbols[id];
+            names[id] = symbol.getName();
+            termCodes[id] = symbol.getTermCode();
+            terms[id] = symbol.getTerm();
+            firstPatterns[id] = p;
+            if (symbol.getTerm() != null || symbol.getPatterns() == null) {
+                continue;
+            }
+            patternCounts[id] = symbol.getPatterns().length;
+
+            //Output order of variables is the key order of a map cleared before each pattern, as in pattern search
+            Map<String, Integer> varOrder = new HashMap<>();
+            Map<String, Integer> typeOrder = new HashMap<>();
+            for (SyntaxOperation[] pattern : symbol.getPatterns()) {
+                starts[p] = ins;
+                lengths[p] = pattern.length;
+                sources[p] = pattern;
+
+                Map<String, Integer> vars = new LinkedHashMap<>();
+                Map<String, Integer> types = new LinkedHashMap<>();
+                for (int i = 0; i < pattern.length; i++, ins++) {
+                    lower(pattern, i, ins, vars, types);
+                }
+
+                varNames[p] = vars.keySet().toArray(new String[0]);
+                varOrders[p] = order(vars, varOrder);
+                typeNames[p] = types.keySet().toArray(new String[0]);
+                typeOrders[p] = order(types, typeOrder);
+                typeVars[p] = new int[typeNames[p].length];
+                for (int t = 0; t < typeNames[p].length; t++) {
+                    Integer slot = vars.get(typeNames[p][t]);
+                    typeVars[p][t] = slot != null ? slot : -1;
+                }
+                maxVars[id] = Math.max(maxVars[id], vars.size());
+                maxTypes[id] = Math.max(maxTypes[id], types.size());
+                p++;
+            }
+        }
+
+        mainSymbol = pack.getMainSymbol() != null && pack.hasSyntaxSymbol(pack.getMainSymbol()) ? pack.getSyntaxSymbol(pack.getMainSymbol()).getId() : -1;
+
+        analysis = new GrammarAnalysis(this);
+        firsts = analysis.patternFirsts;
+        prunable = new boolean[patternCount];
+        for (int i = 0; i < patternCount; i++) {
+            prunable[i] = !analysis.patternNullable[i] && !analysis.patternOpen[i];
+        }
+        skipErrors = new String[patternCount];
+        skipTrees = new SyntaxNode[patternCount];
+        GrammarInterpreter.dryRun(this, prunable, skipErrors, skipTrees);
+        predictive = new boolean[symbols.length];
+        for (int id = 0; id < symbols.length; id++) {
+            for (int i = firstPatterns[id]; i < firstPatterns[id] + patternCounts[id]; i++) {
+                predictive[id] |= prunable[i];
+            }
+        }
+    }
+
+    /**
+     * Compiles patterns of all symbols in the pack.
+     * Missing symbols and unclosed loops or selections are reported when reached during a parse, as in pattern search
+     */
+    @NotNull
+    public static GrammarProgram compile(@NotNull SyntaxPack pack) {
+        return new GrammarProgram(pack);
+    }
+
+    /**Lowers operation i of the pattern into the instruction, assigning slots to its variables*/
+    private void lower(@NotNull SyntaxOperation[] pattern, int i, int ins, @NotNull Map<String, Integer> vars, @NotNull Map<String, Integer> types) {
+        SyntaxOperation op = pattern[i];
+        if (!op.isSymbol()) {
+            opcodes[ins] = NOP;
+        }
+        else if (op.isIdentifier() || op.isLiteral()) {
+            opcodes[ins] = TOKEN;
+            operands[ins] = (op.isIdentifier() ? IDENTIFIER : 0) | (op.isLiteral() ? LITERAL : 0);
+        }
+        else if (!pack.hasSyntaxSymbol(op.getData())) {
+            opcodes[ins] = MISSING;
+            texts[ins] = op.getData();
+        }
+        else {
+            SyntaxSymbol symbol = pack.getSyntaxSymbol(op.getData());
+            if (symbol.getTerm() != null) {
+                opcodes[ins] = TERM;
+                operands[ins] = symbol.getTermCode();
+                texts[ins] = symbol.getTerm();
+                leaves[ins] = SyntaxNode.lexeme(symbol.getTerm());
+            }
+            else {
+                opcodes[ins] = CALL;
+                operands[ins] = symbol.getId();
+            }
+        }
+
+        flags[ins] = (op.isLoopStart() ? LOOP_START : 0) | (op.isLoopEnd() ? LOOP_END : 0) | (op.isSelectionStart() ? SELECT_START : 0);
+        repeats[ins] = Repetition.of(op);
+        loopEnds[ins] = op.isLoopStart() ? findLoopEnd(pattern, i) : -1;
+        selectPoints[ins] = op.isSelectionStart() ? findSelectPoints(pattern, i) : null;
+        varSlots[ins] = slots(op.getVariables(), vars);
+        typeSlots[ins] = op.isIdType() ? slots(op.idsTypeList(), types) : NO_SLOTS;
+    }
+
+    private static int[] slots(@NotNull List<String> names, @NotNull Map<String, Integer> slots) {
+        if (names.isEmpty()) {
+            return NO_SLOTS;
+        }
+        int[] result = new int[names.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = slots.computeIfAbsent(names.get(i), n -> slots.size());
+        }
+        return result;
+    }
+
+    /**Returns slots in key order of the map after it is cleared and gets the names one by one in slot order*/
+    private static int[] order(@NotNull Map<String, Integer> slots, @NotNull Map<String, Integer> map) {
+        map.clear();
+        slots.forEach(map::put);
+        int[] order = new int[map.size()];
+        int i = 0;
+        for (String name : map.keySet()) {
+            order[i++] = map.get(name);
+        }
+        return order;
+    }
+
+    private static int findLoopEnd(@NotNull SyntaxOperation[] pattern, int index) {
+        int l = 0;
+        for (int i = index + 1; i < pattern.length; ++i) {
+            if (pattern[i].isLoopStart()) {
+                ++l;
+            }
+            if (pattern[i].isLoopEnd()) {
+                if (l == 0) {
+                    return i;
+                }
+                --l;
+            }
+        }
+        return -1;
+    }
+
+    @Nullable
+    private static int[] findSelectPoints(@NotNull SyntaxOperation[] pattern, int index) {
+        int l = 0;
+        List<Integer> points = new ArrayList<>();
+        points.add(index);
+        for (int i = index + 1; i < pattern.length; ++i) {
+            SyntaxOperation op = pattern[i];
+            if (op.isSelectionStart()) {
+                ++l;
+            }
+            if (op.isSelectionBody() && l == 0) {
+                points.add(i);
+            }
+            if (op.isSelectionEnd()) {
+                if (l == 0) {
+                    points.add(i);
+                    return points.stream().mapToInt(Integer::intValue).toArray();
+                }
+                --l;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses data from the main symbol of the pack
+     * @param context State of the parse memoizing results, null to parse without memoization
+     * @throws IllegalStateException If the pack has no main symbol
+     */
+    @NotNull
+    public OperationResult parse(@NotNull TokenStream data, @Nullable ParseContext context) throws PatternSearchException {
+        if (mainSymbol == -1) {
+            throw new IllegalStateException("Main symbol \"" + pack.getMainSymbol() + "\" not found");
+        }
+        return new GrammarInterpreter(this, data, context).search(mainSymbol, 0);
+    }
+
+    /**
+     * Parses data from the main symbol of the pack, skipping lexemes up to a synchronization symbol of the pack
+     * after each error and parsing again, until the parse succeeds, data ends or the limit of errors is reached
+     * @param context State of the parse memoizing results, which are kept over skips unless they depend on skipped lexemes,
+     *                null to memoize all symbols
+     * @param errorLimit Maximal count of errors found, 1 to stop at the first one
+     * @throws IllegalStateException If the pack has no main symbol
+     * @throws IllegalArgumentException If the limit is not positive or a synchronization symbol is not a terminal symbol
+     */
+    @NotNull
+    public OperationResult parse(@NotNull TokenStream data, @Nullable ParseContext context, int errorLimit) throws PatternSearchException {
+        if (errorLimit < 1) {
+            throw new IllegalArgumentException("Error limit must be greater than 0: " + errorLimit);
+        }
+        if (mainSymbol == -1) {
+            throw new IllegalStateException("Main symbol \"" + pack.getMainSymbol() + "\" not found");
+        }
+        BitSet sync = new BitSet();
+        for (String name : pack.getSyncSymbols()) {
+            if (!pack.hasSyntaxSymbol(name) || pack.getSyntaxSymbol(name).getTerm() == null) {
+                throw new IllegalArgumentException("Synchronization symbol \"" + name + "\" is not a terminal symbol");
+            }
+            sync.set(pack.getSyntaxSymbol(name).getTermCode());
+        }
+        return new GrammarInterpreter(this, data, context != null ? context : ParseContext.memoizeAll(pack)).recover(mainSymbol, sync, errorLimit);
+    }
+
+    /**
+     * Parses data from the symbol at index
+     * @throws IllegalArgumentException If the symbol does not exist
+     */
+    @NotNull
+    public OperationResult parse(@NotNull String symbol, @NotNull TokenStream data, int index, @Nullable ParseContext context) throws PatternSearchException {
+        return new GrammarInterpreter(this, data, context).search(find(symbol), index);
+    }
+
+    /**
+     * Sets types of identifiers found in variables marked for type assignment
+     * @param dryRun Whether the pattern matched in a run computing effects of failures, which must not assign types
+     * @throws IllegalStateException If types would be assigned in a dry run
+     */
+    void assignTypes(int p, int index, @NotNull SyntaxNode[] vars, @NotNull SyntaxNode[] types, boolean dryRun) throws PatternSearchException {
+        for (int t : typeOrders[p]) {
+            if (types[t] == null) {
+                continue;
+            }
+            if (dryRun) {
+                throw new IllegalStateException("Identifier types are assigned without consuming lexemes");
+            }
+            int slot = typeVars[p][t];
+            if (slot == -1 || vars[slot] == null) {
+                throw new PatternSearchException(typeNames[p][t], sources[p], index, "Variable " + typeNames[p][t] + " not found");
+            }
+            //Identifiers and types are found in the string forms, as pattern search does
+            Matcher m = identifiers.matcher(vars[slot].toString());
+            String type = types[t].toString();
+            Matcher tm = typeMarker.matcher(type);
+
+            if (tm.find()) {
+                type = tm.group().split("@")[0];
+            }
+
+            while (m.find()) {
+                int code = pack.extractIdentifier(m.group());
+                pack.setTypeOfId(code, type);
+            }
+        }
+    }
+
+    /**Builds node of the symbol listing assigned variables of the pattern, which is below the first one if the symbol has no patterns*/
+    @NotNull
+    SyntaxNode buildTree(int symbol, int p, @NotNull SyntaxNode[] vars) {
+        if (p < firstPatterns[symbol]) {
+            return new SyntaxNode(symbol, names[symbol], new String[0], new SyntaxNode[0]);
+        }
+        int count = 0;
+        for (int slot : varOrders[p]) {
+            if (vars[slot] != null) {
+                count++;
+            }
+        }
+        String[] slots = new String[count];
+        SyntaxNode[] children = new SyntaxNode[count];
+        int i = 0;
+        for (int slot : varOrders[p]) {
+            if (vars[slot] != null) {
+                slots[i] = varNames[p][slot];
+                children[i] = vars[slot];
+                i++;
+            }
+        }
+        return new SyntaxNode(symbol, names[symbol], slots, children);
+    }
+
+    /**
+     * Returns index of the symbol
+     * @throws IllegalArgumentException If the symbol does not exist
+     */
+    public int find(@NotNull String name) {
+        return pack.getSyntaxSymbol(name).getId();
+    }
+
+    public int getSymbolCount() {
+        return names.length;
+    }
+
+    public int getInstructionCount() {
+        return opcodes.length;
+    }
+
+    /**Returns FIRST and FOLLOW sets of the symbols*/
+    @NotNull
+    public GrammarAnalysis getAnalysis() {
+        return analysis;
+    }
+
+    @NotNull
+    public SyntaxPack getPack() {
+        return pack;
+    }
+}
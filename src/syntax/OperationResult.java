@@ -4,6 +4,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -12,8 +13,14 @@ public class OperationResult {
     private final int oldPosition;
     private final int newPosition;
     private final boolean success;
-    private final String data;
+    //String form of the result, built from the tree on request
+    private String data;
+    @Nullable
+    private final SyntaxNode tree;
     private final SyntaxError error;
+    //Errors found by a parse recovering from them, null for other results
+    @Nullable
+    private final List<SyntaxError> errors;
     
     public OperationResult(int oldPosition, int newPosition, boolean success, String data, @Nullable SyntaxError error) {
         
@@ -26,13 +33,40 @@ public class OperationResult {
         else {
             this.data = "";
         }
+        this.tree = null;
  
         this.error = error;
+        this.errors = null;
+    }
+    
+    /**Creates a result holding the parse tree, which string form is built only when requested*/
+    public OperationResult(int oldPosition, int newPosition, boolean success, @NotNull SyntaxNode tree, @Nullable SyntaxError error) {
+        this.oldPosition = oldPosition;
+        this.newPosition = newPosition;
+        this.success = success;
+        this.data = null;
+        this.tree = tree;
+        this.error = error;
+        this.errors = null;
+    }
+    
+    /**Creates a result of the parse which recovered from the errors, the first of them becoming the error of the result*/
+    OperationResult(@NotNull OperationResult result, boolean success, @NotNull List<SyntaxError> errors) {
+        this.oldPosition = result.oldPosition;
+        this.newPosition = result.newPosition;
+        this.success = success;
+        this.data = result.data;
+        this.tree = result.tree;
+        this.error = errors.isEmpty() ? result.error : errors.get(0);
+        this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
     }
     
     
     @Override
     public String toString() {
+        if (data == null) {
+            data = tree.toString();
+        }
         return data;
         /*StringBuilder out = new StringBuilder();
         for (DataEntry s : getData()) {
@@ -66,6 +100,15 @@ public class OperationResult {
         return error;
     }
     
+    /**Returns errors in the order they were found: all errors of a recovering parse, otherwise the error of a failure*/
+    @NotNull
+    public List<SyntaxError> getErrors() {
+        if (errors != null) {
+            return errors;
+        }
+        return success || error == null ? Collections.emptyList() : Collections.singletonList(error);
+    }
+    
     public boolean isSuccess() {
         return success;
     }
@@ -80,7 +123,13 @@ public class OperationResult {
     
     
     public String getData() {
-        return data;
+        return toString();
+    }
+    
+    /**Returns the parse tree, or null if the parser produced only the string form*/
+    @Nullable
+    public SyntaxNode getTree() {
+        return tree;
     }
     
     public static class SyntaxError {
@@ -107,6 +156,15 @@ public class OperationResult {
         public int getIndex() {
             return index;
         }
+        
+        /**Returns the error with the higher index, the first one if they are equal*/
+        @Nullable
+        static SyntaxError pick(@Nullable SyntaxError error, @Nullable SyntaxError other) {
+            if (other == null) {
+                return error;
+            }
+            return error == null || other.index > error.index ? other : error;
+        }
     }
     
     public static class DataEntry {
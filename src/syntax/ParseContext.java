@@ -0,0 +1,187 @@
+package syntax;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * State of one parse shared by all symbols searched in it.
+ * Memoizes results of symbols by position, so each symbol is searched at most once at a position
+ */
+public class ParseContext {
+    //Results by symbol id, then by position, allocated on first use
+    private final OperationResult[][] memo;
+    //Symbols which results are kept, null to keep all
+    @Nullable
+    private final boolean[] memoized;
+    //Ends of lexemes each result depends on by symbol id, then by position, null until a parse recovers
+    @Nullable
+    private int[][] extents;
+    //Changes undone by rollback, null if changes are not recorded
+    @Nullable
+    private List<Change> journal;
+    private long hits = 0;
+    private long misses = 0;
+
+    private ParseContext(@NotNull SyntaxPack pack, @Nullable boolean[] memoized) {
+        this.memo = new OperationResult[pack.getSymbolCount()][];
+        this.memoized = memoized;
+    }
+
+    /**Creates a context memoizing every symbol, so parsing takes linear time and memory*/
+    @NotNull
+    public static ParseContext memoizeAll(@NotNull SyntaxPack pack) {
+        return new ParseContext(pack, null);
+    }
+
+    /**
+     * Creates a context memoizing only the named symbols, bounding the memory
+     * @throws IllegalArgumentException If a symbol does not exist
+     */
+    @NotNull
+    public static ParseContext memoizeSelected(@NotNull SyntaxPack pack, @NotNull Collection<String> names) {
+        boolean[] memoized = new boolean[pack.getSymbolCount()];
+        for (String name : names) {
+            memoized[pack.getSyntaxSymbol(name).getId()] = true;
+        }
+        return new ParseContext(pack, memoized);
+    }
+
+    /**Returns result of the symbol with the id stored for the position or null*/
+    @Nullable
+    OperationResult get(int symbol, int position) {
+        OperationResult[] results = memo[symbol];
+        OperationResult result = results != null && position < results.length ? results[position] : null;
+        if (result != null) {
+            hits++;
+        }
+        else {
+            misses++;
+        }
+        return result;
+    }
+
+    /**Stores result of the symbol with the id at the position if the symbol is memoized*/
+    void put(int id, int position, @NotNull OperationResult result) {
+        put(id, position, result, 0);
+    }
+
+    /**
+     * Stores result of the symbol with the id at the position if the symbol is memoized
+     * @param extent End of lexemes the result depends on, 0 if it is unknown
+     */
+    void put(int id, int position, @NotNull OperationResult result, int extent) {
+        if (memoized != null && !memoized[id]) {
+            return;
+        }
+        OperationResult[] results = memo[id];
+        if (results == null) {
+            results = memo[id] = new OperationResult[Math.max(64, position + 1)];
+        }
+        else if (position >= results.length) {
+            results = memo[id] = Arrays.copyOf(results, Math.max(position + 1, results.length * 2));
+        }
+        if (journal != null) {
+            journal.add(new Change(id, position, results[position], extent(id, position)));
+        }
+        results[position] = result;
+        if (extents != null) {
+            int[] ends = extents[id];
+            if (ends == null || ends.length < results.length) {
+                ends = extents[id] = ends == null ? new int[results.length] : Arrays.copyOf(ends, results.length);
+            }
+            ends[position] = extent;
+        }
+    }
+
+    /**Starts keeping ends of lexemes results depend on, results stored before have unknown ends*/
+    void keepExtents() {
+        if (extents == null) {
+            extents = new int[memo.length][];
+        }
+    }
+
+    /**Returns end of lexemes the result of the symbol at the position depends on, or max value if it is unknown*/
+    int extent(int symbol, int position) {
+        int[] ends = extents != null ? extents[symbol] : null;
+        int extent = ends != null && position < ends.length ? ends[position] : 0;
+        return extent == 0 ? Integer.MAX_VALUE : extent;
+    }
+
+    /**Removes results at positions before the end, which depend on lexemes from the start*/
+    void invalidate(int start, int end) {
+        for (int id = 0; id < memo.length; id++) {
+            OperationResult[] results = memo[id];
+            if (results == null) {
+                continue;
+            }
+            for (int position = Math.min(end, results.length) - 1; position >= 0; position--) {
+                if (results[position] != null && extent(id, position) > start) {
+                    if (journal != null) {
+                        journal.add(new Change(id, position, results[position], extent(id, position)));
+                    }
+                    results[position] = null;
+                }
+            }
+        }
+    }
+
+    /**Starts recording changes of stored results, so they can be undone by rollback*/
+    void mark() {
+        journal = new ArrayList<>();
+    }
+
+    /**Undoes changes of stored results since mark and stops recording them*/
+    void rollback() {
+        List<Change> changes = journal;
+        if (changes == null) {
+            throw new IllegalStateException("Changes are not recorded");
+        }
+        journal = null;
+        for (int k = changes.size() - 1; k >= 0; k--) {
+            Change change = changes.get(k);
+            memo[change.symbol][change.position] = change.result;
+            if (extents != null && extents[change.symbol] != null) {
+                extents[change.symbol][change.position] = change.extent == Integer.MAX_VALUE ? 0 : change.extent;
+            }
+        }
+    }
+
+    /**Removes stored results, keeping the counters*/
+    void clear() {
+        Arrays.fill(memo, null);
+        if (extents != null) {
+            Arrays.fill(extents, null);
+        }
+    }
+
+    /**Returns count of searches answered from the memo*/
+    public long getHits() {
+        return hits;
+    }
+
+    /**Returns count of searches performed*/
+    public long getMisses() {
+        return misses;
+    }
+
+    /**Stored result before it was changed*/
+    private static class Change {
+        final int symbol;
+        final int position;
+        @Nullable
+        final OperationResult result;
+        final int extent;
+
+        Change(int symbol, int position, @Nullable OperationResult result, int extent) {
+            this.symbol = symbol;
+            this.position = position;
+            this.result = result;
+            this.extent = extent;
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package syntax;
+
+import core.InMemoryCompiler;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static syntax.GrammarProgram.*;
+
+/**
+ * Generates a parser specialized for a grammar program: every non-terminal symbol is searched by its own method,
+ * terminal symbols and lookahead checks are inlined as comparisons with constant codes,
+ * and non-terminal symbols call each other directly. Repeated operations and patterns with loops, selections or missing symbols
+ * are performed by GeneratedParser. Sources may be written at build time by main, or compiled in the running process
+ */
+public class ParserGenerator {
+    public static final String PACKAGE = "syntax.generated";
+
+    //Compiled parsers by their source, packs are usually fixed for the life of the process
+    private static final Map<String, Class<?>> compiled = new ConcurrentHashMap<>();
+
+    private final GrammarProgram program;
+    private final String className;
+    private final StringBuilder out = new StringBuilder();
+
+    public ParserGenerator(@NotNull GrammarProgram program) {
+        this.program = program;
+        this.className = program.pack.getClass().getSimpleName() + "Parser";
+    }
+
+    public ParserGenerator(@NotNull SyntaxPack pack) {
+        this(GrammarProgram.compile(pack));
+    }
+
+    @NotNull
+    public String getClassName() {
+        return PACKAGE + "." + className;
+    }
+
+    /**Returns Java source of the parser class*/
+    @NotNull
+    public String generate() {
+        out.setLength(0);
+        line(0, "package " + PACKAGE + ";");
+        line(0, "");
+        line(0, "import syntax.*;");
+        line(0, "");
+        line(0, "import java.util.Arrays;");
+        line(0, "");
+        line(0, "/**Generated from " + program.pack.getClass().getName() + "*/");
+        line(0, "public final class " + className + " extends GeneratedParser {");
+        line(1, "private static final SyntaxNode[] NO_VALUES = new SyntaxNode[0];");
+        line(0, "");
+        line(1, "public " + className + "(GrammarProgram program) {");
+        line(2, "super(program, " + GeneratedParser.fingerprint(program) + ");");
+        line(1, "}");
+        line(0, "");
+        line(1, "public " + className + "(SyntaxPack pack) {");
+        line(2, "this(GrammarProgram.compile(pack));");
+        line(1, "}");
+        generateDispatch();
+        for (int s = 0; s < program.getSymbolCount(); s++) {
+            if (program.terms[s] == null) {
+                generateSymbol(s);
+            }
+        }
+        line(0, "}");
+        return out.toString();
+    }
+
+    /**Generates and compiles the parser, reusing a class compiled earlier from the same source*/
+    @NotNull
+    public GeneratedParser compile() {
+        String source = generate();
+        Class<?> type = compiled.computeIfAbsent(source,
+                s -> InMemoryCompiler.compile(getClassName(), s, GeneratedParser.class.getClassLoader()));
+        try {
+            return (GeneratedParser) type.getConstructor(GrammarProgram.class).newInstance(program);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can not instantiate " + getClassName(), e);
+        }
+    }
+
+    /**
+     * Writes source of the parser into the package directory under the root
+     * @return Path of the written file
+     */
+    @NotNull
+    public Path write(@NotNull Path root) throws IOException {
+        Path dir = root.resolve(PACKAGE.replace('.', '/'));
+        Files.createDirectories(dir);
+        Path file = dir.resolve(className + ".java");
+        Files.write(file, generate().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**Writes the parser of a syntax pack at build time, arguments are the pack class name and the source root*/
+    public static void main(String[] args) throws IOException, ReflectiveOperationException {
+        if (args.length != 2) {
+            System.err.println("Usage: ParserGenerator <syntax pack class> <source root>");
+            System.exit(1);
+        }
+        SyntaxPack pack = (SyntaxPack) Class.forName(args[0]).getConstructor().newInstance();
+        System.out.println(new ParserGenerator(pack).write(Paths.get(args[1])));
+    }
+
+    private void generateDispatch() {
+        line(0, "");
+        line(1, "@Override");
+        line(1, "protected OperationResult search(int symbol, int index, int caller) throws PatternSearchException {");
+        line(2, "switch (symbol) {");
+        for (int s = 0; s < program.getSymbolCount(); s++) {
+            if (program.terms[s] == null) {
+                line(3, "case " + s + ":");
+                line(4, "return s" + s + "(index, caller);");
+            }
+        }
+        line(3, "default:");
+        line(4, "throw new IllegalArgumentException(\"Symbol is not a non-terminal symbol: \" + symbol);");
+        line(2, "}");
+        line(1, "}");
+    }
+
+    /**Generates the memoizing method of the symbol and the method searching its patterns*/
+    private void generateSymbol(int s) {
+        GrammarProgram g = program;
+        line(0, "");
+        line(1, "//" + comment(g.names[s]));
+        line(1, "private OperationResult s" + s + "(int index, int caller) throws PatternSearchException {");
+        line(2, "OperationResult result = recall(" + s + ", index);");
+        line(2, "if (result == null) {");
+        line(3, "int outer = enter(" + s + ", index, caller);");
+        line(3, "result = search" + s + "(index);");
+        line(3, "exit(" + s + ", outer);");
+        line(3, "remember(" + s + ", index, result);");
+        line(2, "}");
+        line(2, "return result;");
+        line(1, "}");
+        line(0, "");
+
+        int first = g.firstPatterns[s];
+        int last = first + g.patternCounts[s];
+        line(1, "private OperationResult search" + s + "(int index) throws PatternSearchException {");
+        line(2, "SyntaxNode[] vars = " + (g.maxVars[s] > 0 ? "new SyntaxNode[" + g.maxVars[s] + "]" : "NO_VALUES") + ";");
+        line(2, "SyntaxNode[] types = " + (g.maxTypes[s] > 0 ? "new SyntaxNode[" + g.maxTypes[s] + "]" : "NO_VALUES") + ";");
+        //Skipped and failed patterns with operations raise the error to at least the unknown error, matched ones return
+        line(2, "OperationResult.SyntaxError error = " + (first < last && g.lengths[first] > 0 ? "UNKNOWN_ERROR" : "null") + ";");
+        if (g.predictive[s]) {
+            line(2, "int kind = data.kind(index);");
+        }
+        if (usesResult(first, last)) {
+            line(2, "OperationResult r;");
+        }
+        for (int p = first; p < last; p++) {
+            if (!generatePattern(s, p, p == last - 1)) {
+                //Later patterns are never reached
+                line(1, "}");
+                return;
+            }
+        }
+        line(2, "return new OperationResult(index, index, false, tree(" + s + ", " + (last - 1) + ", vars), error);");
+        line(1, "}");
+    }
+
+    /**
+     * Generates code matching the pattern, which returns the result of the symbol if it matched
+     * @return Whether code after the pattern is reached when the pattern fails
+     */
+    private boolean generatePattern(int s, int p, boolean lastPattern) {
+        GrammarProgram g = program;
+        int start = g.starts[p];
+        int end = start + g.lengths[p];
+        boolean prune = g.predictive[s] && g.prunable[p];
+        line(2, "//" + comment(source(g.sources[p])));
+        line(2, "p" + p + ":");
+        line(2, "{");
+        if (prune) {
+            String condition = lookahead(p);
+            if (!condition.isEmpty()) {
+                line(3, "if (" + condition + ") {");
+            }
+            int indent = condition.isEmpty() ? 3 : 4;
+            line(indent, "error = skip(" + p + ", index, error);");
+            line(indent, lastPattern ? "return skipped(" + p + ", index, error);" : "break p" + p + ";");
+            if (condition.isEmpty()) {
+                line(2, "}");
+                return !lastPattern;
+            }
+            line(3, "}");
+        }
+        //Vars of the first pattern are not assigned yet
+        boolean clear = p != g.firstPatterns[s];
+
+        if (!isStraight(start, end)) {
+            line(3, "r = match(" + s + ", " + p + ", index, vars, types, error);");
+            line(3, "if (r.isSuccess()) {");
+            line(4, "return r;");
+            line(3, "}");
+            line(3, "error = r.getError();");
+            line(2, "}");
+            return true;
+        }
+
+        if (clear && g.maxVars[s] > 0) {
+            line(3, "Arrays.fill(vars, null);");
+        }
+        if (clear && g.maxTypes[s] > 0) {
+            line(3, "Arrays.fill(types, null);");
+        }
+        boolean fails = prune && !lastPattern;
+        if (start < end) {
+            line(3, "int position = index;");
+        }
+        for (int ins = start; ins < end; ins++) {
+            fails |= generateInstruction(p, ins);
+        }
+        if (g.typeOrders[p].length > 0) {
+            line(3, "assignTypes(" + p + ", index, vars, types);");
+        }
+        line(3, "return new OperationResult(index, " + (start < end ? "position" : "index") + ", true, tree(" + s + ", " + p + ", vars), error);");
+        line(2, "}");
+        return fails;
+    }
+
+    /**
+     * Generates code performing the instruction, breaking out of the pattern if it fails
+     * @return Whether the instruction may fail
+     */
+    private boolean generateInstruction(int p, int ins) {
+        GrammarProgram g = program;
+        int[] vars = g.varSlots[ins];
+        int[] types = g.typeSlots[ins];
+        if (g.repeats[ins] != Repetition.NONE) {
+            generateResult(p, "repeat(" + ins + ", position, " + p + ")", vars, types);
+            return true;
+        }
+        switch (g.opcodes[ins]) {
+            case TOKEN: {
+                String kind = "data.kind(position) == ";
+                String condition;
+                if (g.operands[ins] == (IDENTIFIER | LITERAL)) {
+                    condition = "(" + kind + g.identifierCode + " || " + kind + g.literalCode + ")";
+                }
+                else {
+                    condition = kind + ((g.operands[ins] & IDENTIFIER) != 0 ? g.identifierCode : g.literalCode);
+                }
+                line(3, "if (" + condition + ") {");
+                store(vars, types, "lexeme(position)");
+                line(4, "position++;");
+                line(3, "}");
+                fail(p, vars, "expected(\"Expected identifier or literal, but found: \", position)");
+                return true;
+            }
+            case TERM:
+                line(3, "if (data.kind(position) == " + g.operands[ins] + ") {");
+                store(vars, types, "leaf(" + ins + ")");
+                line(4, "position++;");
+                line(3, "}");
+                fail(p, vars, "expected(\"" + escape("Expected terminal symbol " + g.texts[ins] + " , but found: ") + "\", position)");
+                return true;
+            case CALL:
+                generateResult(p, "s" + g.operands[ins] + "(position, " + p + ")", vars, types);
+                return true;
+            default:
+                for (int slot : vars) {
+                    line(3, "vars[" + slot + "] = SyntaxNode.EMPTY;");
+                }
+                for (int slot : types) {
+                    line(3, "types[" + slot + "] = SyntaxNode.EMPTY;");
+                }
+                return false;
+        }
+    }
+
+    /**Generates code applying the result of the call, breaking out of the pattern if it failed*/
+    private void generateResult(int p, @NotNull String call, @NotNull int[] vars, @NotNull int[] types) {
+        line(3, "r = " + call + ";");
+        for (int slot : vars) {
+            line(3, "vars[" + slot + "] = r.getTree();");
+        }
+        line(3, "error = pick(error, r.getError());");
+        line(3, "if (!r.isSuccess()) {");
+        line(4, "break p" + p + ";");
+        line(3, "}");
+        for (int slot : types) {
+            line(3, "types[" + slot + "] = r.getTree();");
+        }
+        line(3, "position = newPosition(r);");
+    }
+
+    /**Generates stores of the value of a matched lexeme, computing it once*/
+    private void store(@NotNull int[] vars, @NotNull int[] types, @NotNull String value) {
+        String first = null;
+        for (int slot : vars) {
+            line(4, "vars[" + slot + "] = " + (first != null ? first : value) + ";");
+            if (first == null) {
+                first = "vars[" + slot + "]";
+            }
+        }
+        for (int slot : types) {
+            line(4, "types[" + slot + "] = " + (first != null ? first : value) + ";");
+            if (first == null) {
+                first = "types[" + slot + "]";
+            }
+        }
+    }
+
+    /**Generates the branch of an unmatched lexeme, which fails the pattern*/
+    private void fail(int p, @NotNull int[] vars, @NotNull String error) {
+        line(3, "else {");
+        for (int slot : vars) {
+            line(4, "vars[" + slot + "] = SyntaxNode.EMPTY;");
+        }
+        line(4, "error = pick(error, " + error + ");");
+        line(4, "break p" + p + ";");
+        line(3, "}");
+    }
+
+    /**Returns condition of a lookahead outside of the FIRST set of the pattern, empty if the set is empty*/
+    @NotNull
+    private String lookahead(int p) {
+        StringBuilder condition = new StringBuilder();
+        for (int kind = program.firsts[p].nextSetBit(0); kind >= 0; kind = program.firsts[p].nextSetBit(kind + 1)) {
+            if (condition.length() > 0) {
+                condition.append(" && ");
+            }
+            condition.append("kind != ").append(kind);
+        }
+        return condition.toString();
+    }
+
+    /**Checks whether instructions have no loops, selections or missing symbols, so they run in order*/
+    private boolean isStraight(int start, int end) {
+        for (int ins = start; ins < end; ins++) {
+            if (program.flags[ins] != 0 || program.opcodes[ins] == MISSING) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**Checks whether patterns of the symbol call symbols or repeat operations*/
+    private boolean usesResult(int first, int last) {
+        for (int p = first; p < last; p++) {
+            int start = program.starts[p];
+            int end = start + program.lengths[p];
+            boolean calls = false;
+            for (int ins = start; ins < end; ins++) {
+                calls |= program.opcodes[ins] == CALL || program.repeats[ins] != Repetition.NONE;
+            }
+            if (calls || !isStraight(start, end)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @NotNull
+    private static String source(@NotNull SyntaxOperation[] pattern) {
+        StringBuilder text = new StringBuilder();
+        for (SyntaxOperation op : pattern) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(op.getData());
+        }
+        return text.toString();
+    }
+
+    private void line(int indent, @NotNull String text) {
+        for (int i = 0; i < indent; i++) {
+            out.append("    ");
+        }
+        out.append(text).append('\n');
+    }
+
+    /**Returns text safe for a line comment*/
+    @NotNull
+    @Contract(pure = true)
+    private static String comment(@NotNull String text) {
+        return text.replace('\n', ' ').replace('\r', ' ').replace("\\u", "\\ u");
+    }
+
+    /**Returns text escaped for a Java string literal*/
+    @NotNull
+    @Contract(pure = true)
+    private static String escape(@NotNull String text) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            }
+            else if (c < ' ' || c >= 127) {
+                result.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
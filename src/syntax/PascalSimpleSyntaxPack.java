@@ -346,6 +346,9 @@ public class PascalSimpleSyntaxPack extends SyntaxPack {
         
         
         setMainSymbol("main");
+        addSyncSymbol(";");
+        addSyncSymbol("end");
+        addSyncSymbol(".");
     }
 }
 
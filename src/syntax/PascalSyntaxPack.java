@@ -264,5 +264,8 @@ public class PascalSyntaxPack extends SyntaxPack {
         
         
         setMainSymbol("main");
+        addSyncSymbol(";");
+        addSyncSymbol("end");
+        addSyncSymbol(".");
     }
 }
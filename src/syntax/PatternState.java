@@ -0,0 +1,177 @@
+package syntax;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static syntax.GrammarProgram.*;
+
+/**
+ * Position of a pattern of a grammar program being matched, with its open loops and selections.
+ * Moves between operations of the pattern as pattern search does, while the caller performs them
+ */
+class PatternState {
+    static final OperationResult.SyntaxError UNKNOWN_ERROR = new OperationResult.SyntaxError("Unknown error occurred", null, 0);
+
+    //Results of operations
+    static final int CONTINUE = 0;
+    static final int FAILED = 2;
+
+    int symbol;
+    int p;
+    int start;
+    int length;
+    //Operation within the pattern and position in lexemes
+    int i;
+    int position;
+    OperationResult.SyntaxError err;
+    //Error of the pattern, null until an operation is performed
+    OperationResult.SyntaxError patternError;
+    //Open loops and selections as pairs of pattern index and lexeme position, the last pair on top
+    int[] loops = new int[8];
+    int loopTop;
+    int[] selects = new int[8];
+    int selectTop;
+
+    /**Starts matching the pattern of the symbol at index*/
+    void begin(@NotNull GrammarProgram g, int symbol, int p, int index) {
+        this.symbol = symbol;
+        this.p = p;
+        start = g.starts[p];
+        length = g.lengths[p];
+        i = 0;
+        position = index;
+        err = UNKNOWN_ERROR;
+        patternError = null;
+        loopTop = 0;
+        selectTop = 0;
+        if (loops.length < length * 2) {
+            loops = new int[length * 2];
+            selects = new int[length * 2];
+        }
+    }
+
+    /**Opens loop and selection starting at the current operation, if they are not open yet*/
+    void enter(@NotNull GrammarProgram g) throws PatternSearchException {
+        int ins = start + i;
+        int flag = g.flags[ins];
+        if ((flag & LOOP_START) != 0 && (loopTop == 0 || loops[loopTop - 2] != i)) {
+            if (g.loopEnds[ins] == -1) {
+                throw new PatternSearchException(g.names[symbol], g.sources[p], length - 1, "Unclosed loop");
+            }
+            loops[loopTop++] = i;
+            loops[loopTop++] = position;
+        }
+        if ((flag & SELECT_START) != 0 && (selectTop == 0 || selects[selectTop - 2] != i)) {
+            if (g.selectPoints[ins] == null) {
+                throw new PatternSearchException(g.names[symbol], g.sources[p], length - 1, "Unclosed selection");
+            }
+            selects[selectTop++] = i;
+            selects[selectTop++] = position;
+        }
+    }
+
+    /**
+     * Saves the error of the current operation and moves to the next operation according to its result
+     * @return CONTINUE, or FAILED if the pattern failed
+     */
+    int complete(@NotNull GrammarProgram g, boolean ok, int next, @Nullable OperationResult.SyntaxError opError) throws PatternSearchException {
+        int i = this.i;
+        int ins = start + i;
+
+        //Saves error with highest index
+        if (opError != null && opError.getIndex() > err.getIndex()) {
+            err = opError;
+        }
+        patternError = err;
+
+        //Breaks if operation failed and not in loop or select
+        if (!ok && loopTop == 0 && selectTop == 0) {
+            return FAILED;
+        }
+
+        if (ok) {
+            position = next;
+            if (selectTop != 0) {
+                int[] points = g.selectPoints[start + selects[selectTop - 2]];
+                if (hasPoint(points, i + 1) && points[0] != i) {
+                    selectTop -= 2;
+                    i = points[points.length - 1];
+                }
+            }
+        }
+        else {
+            //Checks whether loop or select was started last
+            boolean loop = loopTop != 0 && (selectTop == 0 || selects[selectTop - 2] <= loops[loopTop - 2]);
+
+            if (loop) {
+                //If the loop was last break and return to the beginning
+                position = loops[loopTop - 1];
+                i = g.loopEnds[start + loops[loopTop - 2]];
+                loopTop -= 2;
+            }
+            else if (selectTop != 0) {
+                //If in selection tries to try next option
+                position = selects[selectTop - 1];
+                int[] points = g.selectPoints[start + selects[selectTop - 2]];
+                int point = nextPoint(points, i);
+                if (point == -1) {
+                    throw new PatternSearchException(g.names[symbol], g.sources[p], i, "Selection point not found");
+                }
+                if (point == points[points.length - 1]) {
+                    selectTop -= 2;
+
+                    //Breaks if select is ended with failure
+                    if (loopTop == 0 && selectTop == 0) {
+                        return FAILED;
+                    }
+                    else if (loopTop != 0) {
+                        position = loops[loopTop - 1];
+                        i = g.loopEnds[start + loops[loopTop - 2]];
+                        loopTop -= 2;
+                    }
+                }
+                else {
+                    i = point;
+                }
+            }
+        }
+
+        if ((g.flags[ins] & LOOP_END) != 0) {
+            if (loopTop == 0) {
+                throw new PatternSearchException(g.names[symbol], g.sources[p], i, "Unexpected loop end");
+            }
+            if (!ok) {
+                throw new PatternSearchException(g.names[symbol], g.sources[p], i, "Loop end failed");
+            }
+            else if (g.loopEnds[start + loops[loopTop - 2]] == i) {
+                //If at the loop end index, jump to start
+                loops[loopTop - 1] = position;
+                i = loops[loopTop - 2];
+            }
+        }
+        if (i == length - 1 && loopTop != 0) {
+            throw new PatternSearchException(g.names[symbol], g.sources[p], i, "Unclosed loop");
+        }
+
+        this.i = i + 1;
+        return CONTINUE;
+    }
+
+    private static boolean hasPoint(@NotNull int[] points, int index) {
+        for (int point : points) {
+            if (point == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int nextPoint(@NotNull int[] points, int index) {
+        for (int point : points) {
+            if (point > index) {
+                return point;
+            }
+        }
+        return -1;
+    }
+}
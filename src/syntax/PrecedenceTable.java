@@ -15,6 +15,8 @@ import java.util.stream.Collectors;
 public abstract class PrecedenceTable {
     private Map<String, Map<String, Precedence>> map;
     private List<String> keys;
+    //Values indexed by symbol codes, rebuilt on first access after a change
+    private Precedence[][] codeTable;
     
     public enum Precedence {
         NONE, HIGHER, EQUAL, LOWER
@@ -33,6 +35,33 @@ public abstract class PrecedenceTable {
         return map.get(x).get(y);
     }
     
+    /**Returns precedence between symbols by their codes*/
+    public Precedence get(int x, int y) {
+        if (codeTable == null) {
+            buildCodeTable();
+        }
+        if (x < 0 || y < 0 || x >= codeTable.length || y >= codeTable.length) {
+            return Precedence.NONE;
+        }
+        return codeTable[x][y];
+    }
+    
+    private void buildCodeTable() {
+        int max = -1;
+        for (String key : keys) {
+            max = Math.max(max, Integer.parseInt(key));
+        }
+        codeTable = new Precedence[max + 1][max + 1];
+        for (Precedence[] row : codeTable) {
+            Arrays.fill(row, Precedence.NONE);
+        }
+        for (String x : keys) {
+            for (String y : keys) {
+                codeTable[Integer.parseInt(x)][Integer.parseInt(y)] = map.get(x).get(y);
+            }
+        }
+    }
+    
     public void set(String x, String y, Precedence value) throws InvalidKeyException {
         if (!contains(x) || !contains(y)) {
             if (!contains(x)) {
@@ -43,6 +72,7 @@ public abstract class PrecedenceTable {
             }
         }
         map.get(x).put(y, value);
+        codeTable = null;
     }
     
     protected void add(String key) {
@@ -54,6 +84,7 @@ public abstract class PrecedenceTable {
         keys.forEach((k) -> map.get(key).put(k, Precedence.NONE));
         keys.add(key);
         map.forEach((k, v) -> v.put(key, Precedence.NONE));
+        codeTable = null;
     }
     
     public boolean contains(String key) {
@@ -150,6 +181,10 @@ public abstract class PrecedenceTable {
         if (Arrays.stream(symbol.getPatterns()).anyMatch(p -> Arrays.stream(p).anyMatch(op -> op.isSelectionStart() || op.isSelectionEnd() || op.isSelectionBody() || op.isLoopStart() || op.isLoopEnd()))) {
             throw new PatternSearchException(symbol.getName(), null, 0, "Loop and select operation not supported");
         }
+        //Repeated non-terminal symbols are analyzed as single occurrences
+        if (Arrays.stream(symbol.getPatterns()).anyMatch(p -> Arrays.stream(p).anyMatch(op -> op.isRepeated() && (op.isLiteral() || op.isIdentifier() || symbol.getPack().getSyntaxSymbol(op.getData()).getTerm() != null)))) {
+            throw new PatternSearchException(symbol.getName(), null, 0, "Repetition of terminal symbols not supported");
+        }
         
         SymbolData data = new SymbolData(symbol);
         dataMap.put(symbol, data);
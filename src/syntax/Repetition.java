@@ -0,0 +1,88 @@
+package syntax;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * State of a repeated operation, fed with results of its iterations by the engines.
+ * Repetition is greedy: iterations go on while they match and consume lexemes, a failed iteration ends it
+ * without failing the operation, as the empty alternative of a right-recursive symbol would.
+ * Values of matched iterations form one list node, errors of all iterations are kept as in a pattern
+ */
+final class Repetition {
+    //Modes
+    static final int NONE = 0;
+    static final int ZERO_OR_MORE = 1;
+    static final int ONE_OR_MORE = 2;
+    static final int OPTIONAL = 3;
+
+    private int mode;
+    private int index;
+    //Position after the matched iterations
+    int position;
+    private final List<SyntaxNode> items = new ArrayList<>();
+    private OperationResult.SyntaxError error;
+    private OperationResult result;
+
+    /**Returns mode of the operation*/
+    static int of(@NotNull SyntaxOperation op) {
+        if (op.isZeroOrMore()) {
+            return ZERO_OR_MORE;
+        }
+        if (op.isOneOrMore()) {
+            return ONE_OR_MORE;
+        }
+        return op.isOptional() ? OPTIONAL : NONE;
+    }
+
+    /**Starts the operation at index*/
+    void begin(int mode, int index) {
+        if (mode == NONE) {
+            throw new IllegalArgumentException("Operation is not repeated");
+        }
+        this.mode = mode;
+        this.index = index;
+        position = index;
+        items.clear();
+        error = null;
+        result = null;
+    }
+
+    /**
+     * Adds result of the iteration at the position
+     * @return Whether the next iteration is performed at the new position, otherwise the result is ready
+     */
+    boolean add(@NotNull OperationResult res) {
+        error = OperationResult.SyntaxError.pick(error, res.getError());
+        if (mode == OPTIONAL) {
+            result = res.isSuccess() ? new OperationResult(index, res.getNewPosition(), true, res.getTree(), error) : new OperationResult(index, index, true, SyntaxNode.EMPTY, error);
+            return false;
+        }
+        if (!res.isSuccess() && mode == ONE_OR_MORE && items.isEmpty()) {
+            result = new OperationResult(index, index, false, res.getTree(), error);
+            return false;
+        }
+        //Iterations matching no lexemes would repeat forever
+        if (res.isSuccess() && res.getNewPosition() > position) {
+            items.add(res.getTree());
+            position = res.getNewPosition();
+            return true;
+        }
+        result = new OperationResult(index, position, true, SyntaxNode.list(items.toArray(new SyntaxNode[0])), error);
+        return false;
+    }
+
+    /**
+     * Returns result of the whole operation
+     * @throws IllegalStateException If an iteration is still expected
+     */
+    @NotNull
+    OperationResult getResult() {
+        if (result == null) {
+            throw new IllegalStateException("Repetition is not finished");
+        }
+        return result;
+    }
+}
@@ -0,0 +1,138 @@
+package syntax;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Node of the parse tree: a searched symbol with its variables as named children, a lexeme,
+ * or a list of values of a repeated operation, named by their indexes and having an empty name.
+ * Nodes are immutable and may be shared by memoized results, so the string form is only built on request
+ */
+public final class SyntaxNode {
+    private static final String[] NO_SLOTS = new String[0];
+    private static final SyntaxNode[] NO_CHILDREN = new SyntaxNode[0];
+
+    /**Value of operations which match no lexeme*/
+    public static final SyntaxNode EMPTY = new SyntaxNode("");
+
+    private static final int LEXEME = -1;
+    private static final int LIST = -2;
+
+    //Id of the syntax symbol, LEXEME or LIST
+    private final int symbol;
+    //Name of the symbol or text of the lexeme
+    private final String name;
+    //Variable names, in the order the string form lists them
+    private final String[] slots;
+    private final SyntaxNode[] children;
+
+    SyntaxNode(int symbol, @NotNull String name, @NotNull String[] slots, @NotNull SyntaxNode[] children) {
+        if (slots.length != children.length) {
+            throw new IllegalArgumentException("Count of variables and values differs: " + slots.length + " " + children.length);
+        }
+        this.symbol = symbol;
+        this.name = name;
+        this.slots = slots;
+        this.children = children;
+    }
+
+    private SyntaxNode(@NotNull String token) {
+        this(LEXEME, token, NO_SLOTS, NO_CHILDREN);
+    }
+
+    /**Creates a leaf holding the text of a lexeme*/
+    @NotNull
+    static SyntaxNode lexeme(@NotNull String token) {
+        return token.isEmpty() ? EMPTY : new SyntaxNode(token);
+    }
+
+    /**Creates a list of values with slots $0, $1 and so on*/
+    @NotNull
+    static SyntaxNode list(@NotNull SyntaxNode[] items) {
+        String[] slots = new String[items.length];
+        for (int i = 0; i < items.length; i++) {
+            slots[i] = "$" + i;
+        }
+        return new SyntaxNode(LIST, "", slots, items);
+    }
+
+    /**Returns id of the symbol in its syntax pack, or a negative number for lexemes and lists*/
+    public int getSymbol() {
+        return symbol;
+    }
+
+    public boolean isLexeme() {
+        return symbol == LEXEME;
+    }
+
+    public boolean isList() {
+        return symbol == LIST;
+    }
+
+    /**Returns name of the symbol, or text of the lexeme*/
+    @NotNull
+    public String getName() {
+        return name;
+    }
+
+    /**Returns count of variables of the symbol*/
+    public int size() {
+        return slots.length;
+    }
+
+    /**Returns name of the variable i with the leading $*/
+    @NotNull
+    public String getSlot(int i) {
+        return slots[i];
+    }
+
+    @NotNull
+    public SyntaxNode getChild(int i) {
+        return children[i];
+    }
+
+    /**Returns value of the variable with the name including the leading $, or null*/
+    @Nullable
+    public SyntaxNode get(@NotNull String slot) {
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i].equals(slot)) {
+                return children[i];
+            }
+        }
+        return null;
+    }
+
+    /**Builds the string form (value@$variable|...#name), walking the tree without recursion*/
+    @Override
+    public String toString() {
+        if (isLexeme()) {
+            return name;
+        }
+        StringBuilder out = new StringBuilder();
+        //Nodes to write and text following them
+        Deque<Object> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            Object top = stack.pop();
+            if (top instanceof String) {
+                out.append((String) top);
+                continue;
+            }
+            SyntaxNode node = (SyntaxNode) top;
+            if (node.isLexeme()) {
+                out.append(node.name);
+                continue;
+            }
+            out.append("(");
+            stack.push("#" + node.name + ")");
+            for (int i = node.slots.length - 1; i >= 0; i--) {
+                stack.push(i < node.slots.length - 1 ? "@" + node.slots[i] + "|" : "@" + node.slots[i]);
+                stack.push(node.children[i]);
+            }
+        }
+        return out.toString();
+    }
+}
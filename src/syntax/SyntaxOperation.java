@@ -7,11 +7,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
-/**Class containing data about single syntax operation*/
+/**
+ * Class containing data about single syntax operation.
+ * Params "*", "+" and "?" repeat the operation zero or more times, one or more times, or at most once
+ */
 public class SyntaxOperation {
     private final String data;
     private final String[] params;
 
+    /**@throws IllegalArgumentException If more than one repetition is given*/
     public SyntaxOperation(@Nullable String data, @Nullable String params) {
         this.data = data;
         if (params != null) {
@@ -20,6 +24,9 @@ public class SyntaxOperation {
         else {
             this.params = new String[0];
         }
+        if ((isZeroOrMore() ? 1 : 0) + (isOneOrMore() ? 1 : 0) + (isOptional() ? 1 : 0) > 1) {
+            throw new IllegalArgumentException("Operation has more than one repetition: " + params);
+        }
     }
 
     String getData() {
@@ -61,6 +68,22 @@ public class SyntaxOperation {
     boolean isSelectionBody() {
         return contains("sb");
     }
+
+    boolean isZeroOrMore() {
+        return contains("*");
+    }
+
+    boolean isOneOrMore() {
+        return contains("+");
+    }
+
+    boolean isOptional() {
+        return contains("?");
+    }
+
+    boolean isRepeated() {
+        return isZeroOrMore() || isOneOrMore() || isOptional();
+    }
     
     boolean isIdType() {
         return Arrays.stream(params).anyMatch(s -> s.startsWith("type->$"));
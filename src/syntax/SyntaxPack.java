@@ -3,14 +3,23 @@ package syntax;
 import core.SymbolsSystem;
 import lexis.SymbolPack;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 
 /**
- * Abstract class containing syntax rules
+ * Abstract class containing syntax rules.
+ * Right-recursive loop symbols, whose patterns end with the symbol itself and are followed by an empty pattern,
+ * are rewritten into repetitions of their bodies, so each reference to such symbol repeats it with "*"
  */
 public abstract class SyntaxPack {
     
@@ -21,6 +30,8 @@ public abstract class SyntaxPack {
     private SymbolPack lexis;
     private Map<String, SyntaxSymbol> syntax = new HashMap<>();
     private String mainSymbol;
+    //Terminal symbols at which parsing resumes after an error
+    private Set<String> syncSymbols = new LinkedHashSet<>();
     private int identifierCode;
     private int literalCode;
     
@@ -37,6 +48,7 @@ public abstract class SyntaxPack {
         addTerminalsFromPack(lexis);
         addSyntaxSymbol(ID_NAME, null, Integer.toString(getIdentifierCode()));
         addSyntaxSymbol(LIT_NAME, null, Integer.toString(getLiteralCode()));
+        rewriteLoops();
     }
     
     protected abstract void init();
@@ -54,6 +66,11 @@ public abstract class SyntaxPack {
         return s;
     }
     
+    /**Returns count of symbols, which are numbered densely from 0*/
+    public int getSymbolCount() {
+        return syntax.size();
+    }
+    
     public boolean hasSyntaxSymbol(String name) {
         return syntax.containsKey(name);
     }
@@ -93,6 +110,16 @@ public abstract class SyntaxPack {
         this.mainSymbol = mainSymbol;
     }
     
+    /**Returns names of terminal symbols at which parsing resumes after an error*/
+    public Set<String> getSyncSymbols() {
+        return Collections.unmodifiableSet(syncSymbols);
+    }
+    
+    /**Adds terminal symbol at which parsing resumes after an error, skipping lexemes before it*/
+    protected void addSyncSymbol(String name) {
+        syncSymbols.add(name);
+    }
+    
     protected void setSymbolPack(SymbolPack pack) {
         lexis = pack;
     }
@@ -111,6 +138,99 @@ public abstract class SyntaxPack {
         setLiteralCode(pack.getLiteralCode());
     }
     
+    /**
+     * Replaces loop symbols L = b1 L | b2 L | ... | empty with L = b1 | b2 | ..., referenced as L*.
+     * Pattern search tries the bodies in order at each iteration and stops at the first failure, as the recursion did.
+     * A later pattern with the same body as an earlier one can never match, so it is dropped
+     */
+    private void rewriteLoops() {
+        List<SyntaxSymbol> symbols = new ArrayList<>(syntax.values());
+        symbols.sort(Comparator.comparingInt(SyntaxSymbol::getId));
+        for (SyntaxSymbol symbol : symbols) {
+            SyntaxOperation[][] bodies = loopBodies(symbol);
+            if (bodies == null) {
+                continue;
+            }
+            symbol.setPatterns(bodies);
+            for (SyntaxSymbol other : symbols) {
+                if (other.getTerm() != null || other.getPatterns() == null) {
+                    continue;
+                }
+                for (SyntaxOperation[] pattern : other.getPatterns()) {
+                    for (int i = 0; i < pattern.length; i++) {
+                        SyntaxOperation op = pattern[i];
+                        if (op.isSymbol() && symbol.getName().equals(op.getData())) {
+                            pattern[i] = new SyntaxOperation(op.getData(), String.join(" ", op.getParams()) + " *");
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /**Returns bodies of the loop symbol without the recursive call, or null if the symbol is not a loop symbol*/
+    private SyntaxOperation[][] loopBodies(SyntaxSymbol symbol) {
+        SyntaxOperation[][] patterns = symbol.getPatterns();
+        if (symbol.getTerm() != null || patterns == null || symbol.getName().equals(mainSymbol) || isRepeated(symbol)) {
+            return null;
+        }
+        List<SyntaxOperation[]> bodies = new ArrayList<>();
+        for (SyntaxOperation[] pattern : patterns) {
+            if (pattern.length == 0) {
+                return bodies.isEmpty() ? null : bodies.toArray(new SyntaxOperation[0][]);
+            }
+            if (pattern.length < 2 || !isTailCall(pattern[pattern.length - 1])) {
+                return null;
+            }
+            SyntaxOperation[] body = Arrays.copyOf(pattern, pattern.length - 1);
+            if (bodies.stream().noneMatch(b -> sameOperations(b, body))) {
+                //Only the first pattern with a body decides how the loop goes on
+                if (!symbol.getName().equals(pattern[pattern.length - 1].getData())) {
+                    return null;
+                }
+                bodies.add(body);
+            }
+        }
+        return null;
+    }
+    
+    /**Checks whether the operation only calls a non-terminal symbol, possibly storing it in variables*/
+    private boolean isTailCall(SyntaxOperation op) {
+        if (op.getData() == null || !op.isSymbol()) {
+            return false;
+        }
+        return Arrays.stream(op.getParams()).allMatch(p -> p.equals("s") || p.startsWith("$"));
+    }
+    
+    /**Checks whether some operation already repeats the symbol*/
+    private boolean isRepeated(SyntaxSymbol symbol) {
+        for (SyntaxSymbol other : syntax.values()) {
+            if (other.getTerm() != null || other.getPatterns() == null) {
+                continue;
+            }
+            for (SyntaxOperation[] pattern : other.getPatterns()) {
+                for (SyntaxOperation op : pattern) {
+                    if (op.isRepeated() && symbol.getName().equals(op.getData())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+    
+    private static boolean sameOperations(SyntaxOperation[] a, SyntaxOperation[] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (!Objects.equals(a[i].getData(), b[i].getData()) || !Arrays.equals(a[i].getParams(), b[i].getParams())) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
     public int extractIdentifier(String input) {
         return lexis.extractIdentifier(input);
     }
@@ -1,6 +1,7 @@
 package syntax;
 
 import core.Logger;
+import lexis.TokenStream;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -12,9 +13,12 @@ import java.util.regex.Pattern;
 /**Class containing data about a symbol*/
 public class SyntaxSymbol {
     private final SyntaxPack pack;
+    //Dense index of the symbol in its pack
+    private final int id;
     private final String name;
-    private final SyntaxOperation[][] patterns;
+    private SyntaxOperation[][] patterns;
     private final String term;
+    private final int termCode;
     private boolean inlinePrecedence = false;
     
     /**
@@ -36,6 +40,8 @@ public class SyntaxSymbol {
             this.patterns = null;
         }
         this.term = term;
+        this.termCode = term != null ? Integer.parseInt(term) : -1;
+        this.id = pack.getSymbolCount();
         this.pack.addSyntaxSymbol(name, this);
     }
     
@@ -43,25 +49,55 @@ public class SyntaxSymbol {
         return name;
     }
     
+    int getId() {
+        return id;
+    }
+    
     SyntaxOperation[][] getPatterns() {
         return patterns;
     }
     
+    /**Replaces patterns of the non-terminal symbol, used by rewrites of the pack*/
+    void setPatterns(@NotNull SyntaxOperation[][] patterns) {
+        this.patterns = patterns;
+    }
+    
     SyntaxPack getPack() {
         return pack;
     }
     
     /**
      * Perform search of patterns in data starting at index
-     * @param data Input data sa an array of strings
+     * @param data Input data sa a stream of lexemes
      * @param index Index to begin search at
      * @return Object containing result information
      * */
     @NotNull
-    public OperationResult searchPatterns(@NotNull String[] data, int index) throws PatternSearchException {
-        List<String> out = new ArrayList<>();
+    public OperationResult searchPatterns(@NotNull TokenStream data, int index) throws PatternSearchException {
+        return searchPatterns(data, index, null);
+    }
+    
+    /**
+     * Perform search of patterns in data starting at index, reusing results stored in the context
+     * @param context State of the parse memoizing results, null to search without memoization
+     */
+    @NotNull
+    public OperationResult searchPatterns(@NotNull TokenStream data, int index, @Nullable ParseContext context) throws PatternSearchException {
+        if (context == null) {
+            return search(data, index, null);
+        }
+        OperationResult result = context.get(id, index);
+        if (result == null) {
+            result = search(data, index, context);
+            context.put(id, index, result);
+        }
+        return result;
+    }
+    
+    @NotNull
+    private OperationResult search(@NotNull TokenStream data, int index, @Nullable ParseContext context) throws PatternSearchException {
         //Map containing variables
-        Map<String, String> vars = new HashMap<>();
+        Map<String, SyntaxNode> vars = new HashMap<>();
         //Map containing data about identifier type assignment
         Map<String, String> types = new HashMap<>();
         OperationResult.SyntaxError error = null;
@@ -71,7 +107,6 @@ public class SyntaxSymbol {
             boolean success = true;
             OperationResult.SyntaxError err = new OperationResult.SyntaxError("Unknown error occurred", null, 0);
 
-            out.clear();
             Stack<LoopData> loops = new Stack<>();
             Stack<SelectData> selects = new Stack<>();
             vars.clear();
@@ -93,13 +128,13 @@ public class SyntaxSymbol {
                 Logger.getInstance().logln("syntax", name + ": " + i + " enter");
                 
                 //Tries to perform operation
-                OperationResult res = performOperation(op, data, position);
+                OperationResult res = op.isRepeated() ? performRepetition(op, data, position, context) : performOperation(op, data, position, context);
                 
-                Logger.getInstance().logln("syntax", "(" + data[position] + ") " + res.getOldPosition() + " -> " + (res.isSuccess() ? res.getNewPosition() : "\"" + res.getError() + "\"") + (loops.isEmpty() ? "" : " l") + (selects.isEmpty() ? "" : " s") + " : " + name + ": " + i + " exit");
+                Logger.getInstance().logln("syntax", "(" + data.getToken(position) + ") " + res.getOldPosition() + " -> " + (res.isSuccess() ? res.getNewPosition() : "\"" + res.getError() + "\"") + (loops.isEmpty() ? "" : " l") + (selects.isEmpty() ? "" : " s") + " : " + name + ": " + i + " exit");
     
                 //Stores variables
                 if (op.containsVariables()) {
-                    op.getVariables().forEach(v -> vars.put(v, res.toString()));
+                    op.getVariables().forEach(v -> vars.put(v, res.getTree()));
                 }
                 
                 //Stores identifier type
@@ -126,7 +161,6 @@ public class SyntaxSymbol {
                 if (res.isSuccess()) {
                     //Updates position and data if operation succeeded
                     position = res.getNewPosition();
-                    out.add(res.getData());
                     
                     if (!selects.isEmpty()) {
                         if (selects.peek().hasPoint(i + 1) && selects.peek().getStart() != i) {
@@ -204,7 +238,7 @@ public class SyntaxSymbol {
                     if (vars.get(name) == null) {
                         throw new PatternSearchException(name, pattern, index, "Variable " + name + " not found");
                     }
-                    Matcher m = p.matcher(vars.get(name));
+                    Matcher m = p.matcher(vars.get(name).toString());
                     Matcher tm = tp.matcher(types.get(name));
         
                     String type = types.get(name);
@@ -218,63 +252,53 @@ public class SyntaxSymbol {
                     }
                 }
                 
-                return new OperationResult(index, position, true, buildOutString(getName(), vars), error);
+                return new OperationResult(index, position, true, buildTree(vars), error);
             }
         }
-        return new OperationResult(index, index, false, buildOutString(getName(), vars), error);
+        return new OperationResult(index, index, false, buildTree(vars), error);
     }
     
-    private String buildOutString(String name, Map<String, String> vars) {
-        StringBuilder out = new StringBuilder();
-        out.append("(");
-    
+    /**Builds node of the symbol listing variables in the order of the map*/
+    @NotNull
+    private SyntaxNode buildTree(@NotNull Map<String, SyntaxNode> vars) {
+        String[] slots = new String[vars.size()];
+        SyntaxNode[] children = new SyntaxNode[vars.size()];
         int i = 0;
-        for (String var : vars.keySet()) {
-            
-            out.append(vars.get(var)).append("@").append(var);
-            
-            if (i < vars.size() - 1) {
-                out.append("|");
-            }
-            
+        for (Map.Entry<String, SyntaxNode> var : vars.entrySet()) {
+            slots[i] = var.getKey();
+            children[i] = var.getValue();
             i++;
         }
-        
-        out.append("#").append(name).append(")");
-        return out.toString();
+        return new SyntaxNode(id, getName(), slots, children);
     }
 
     /**
      * Performs specified syntax operation on data at index
      * @param op Operation to perform
-     * @param data Input data sa an array of strings
+     * @param data Input data sa a stream of lexemes
      * @param index Index to perform operation at
+     * @param context State of the parse, null if results are not memoized
      * @return Returns an object containing resulting information
      * */
     @NotNull
-    @Contract("_, _, _ -> new")
-    private OperationResult performOperation(@NotNull SyntaxOperation op, @NotNull String[] data, int index) throws PatternSearchException {
+    @Contract("_, _, _, _ -> new")
+    private OperationResult performOperation(@NotNull SyntaxOperation op, @NotNull TokenStream data, int index, @Nullable ParseContext context) throws PatternSearchException {
         //Checks if to perform symbol search
         if (op.isSymbol()) {
             
             //Checks if symbol is identifier or literal
             if (op.isIdentifier() || op.isLiteral()) {
-                if (data[index].contains(".")) {
-                    
-                    String key = data[index].substring(0, data[index].indexOf('.'));
-                    
-                    if (op.isIdentifier() && key.equals(Integer.toString(this.pack.getIdentifierCode()))) {
-                       return new OperationResult(index, index + 1, true, data[index], null);
-                    }
-                    else if (op.isLiteral() && key.equals(Integer.toString(this.pack.getLiteralCode()))) {
-                        return new OperationResult(index, index + 1, true, data[index], null);
-                    }
-                    else {
-                        return new OperationResult(index, index, false, "", new OperationResult.SyntaxError("Expected identifier or literal, but found: " + data[index] + " at " + index, data[index], index));
-                    }
+                int kind = data.kind(index);
+                
+                if (op.isIdentifier() && kind == this.pack.getIdentifierCode()) {
+                   return new OperationResult(index, index + 1, true, SyntaxNode.lexeme(data.getToken(index)), null);
+                }
+                else if (op.isLiteral() && kind == this.pack.getLiteralCode()) {
+                    return new OperationResult(index, index + 1, true, SyntaxNode.lexeme(data.getToken(index)), null);
                 }
                 else {
-                    return new OperationResult(index, index, false, "", new OperationResult.SyntaxError("Expected identifier or literal, but found: " + data[index] + " at " + index, data[index], index));
+                    String token = data.getToken(index);
+                    return new OperationResult(index, index, false, SyntaxNode.EMPTY, new OperationResult.SyntaxError("Expected identifier or literal, but found: " + token + " at " + index, token, index));
                 }
             }
 
@@ -284,22 +308,35 @@ public class SyntaxSymbol {
             }
             
             //Tries fo find symbol in data
-            if (this.pack.getSyntaxSymbol(op.getData()).getTerm() != null) {
-                String term = this.pack.getSyntaxSymbol(op.getData()).getTerm();
+            SyntaxSymbol symbol = this.pack.getSyntaxSymbol(op.getData());
+            if (symbol.getTerm() != null) {
+                String term = symbol.getTerm();
 
-                if (data[index].equals(term)) {
-                    return new OperationResult(index, index + 1, true, term, null);
+                if (data.kind(index) == symbol.getTermCode()) {
+                    return new OperationResult(index, index + 1, true, SyntaxNode.lexeme(term), null);
                 }
                 else {
-                    return new OperationResult(index, index, false, "", new OperationResult.SyntaxError("Expected terminal symbol " + term + " , but found: " + data[index] + " at " + index, data[index], index));
+                    String token = data.getToken(index);
+                    return new OperationResult(index, index, false, SyntaxNode.EMPTY, new OperationResult.SyntaxError("Expected terminal symbol " + term + " , but found: " + token + " at " + index, token, index));
                 }
             }
             else {
-                OperationResult res = this.pack.getSyntaxSymbol(op.getData()).searchPatterns(data, index);
-                return new OperationResult(index, res.getNewPosition(), res.isSuccess(), res.toString(), res.getError());
+                OperationResult res = symbol.searchPatterns(data, index, context);
+                return new OperationResult(index, res.getNewPosition(), res.isSuccess(), res.getTree(), res.getError());
             }
         }
-        return new OperationResult(index, index, true, "", null);
+        return new OperationResult(index, index, true, SyntaxNode.EMPTY, null);
+    }
+    
+    /**Performs the repeated operation on data at index, iteration by iteration*/
+    @NotNull
+    private OperationResult performRepetition(@NotNull SyntaxOperation op, @NotNull TokenStream data, int index, @Nullable ParseContext context) throws PatternSearchException {
+        Repetition repetition = new Repetition();
+        repetition.begin(Repetition.of(op), index);
+        while (repetition.add(performOperation(op, data, repetition.position, context))) {
+            Logger.getInstance().logln("syntax", name + ": repeat at " + repetition.position);
+        }
+        return repetition.getResult();
     }
     
     @Contract(pure = true)
@@ -307,6 +344,12 @@ public class SyntaxSymbol {
         return this.term;
     }
     
+    /**Returns code of the terminal symbol, or -1 for non-terminals*/
+    @Contract(pure = true)
+    int getTermCode() {
+        return this.termCode;
+    }
+    
     @NotNull
     @Contract("_, _, _ -> new")
     private LoopData findLoop(int startIndex, @NotNull SyntaxOperation[] pattern, int index) throws PatternSearchException {